@@ -0,0 +1,67 @@
+package org.nessie.tools.benchmarks;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times a run of {@code check-accessibility fileio} over a catalog generated once per trial on a local warehouse. At
+ * {@code METADATA} depth it measures the content fetches and metadata file checks, at {@code DATA}
+ * depth mostly the existence checks of the manifests and data files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AccessibilityCheckBenchmark {
+
+    @Param({"500", "5000"})
+    public int catalogSize;
+
+    @Param({"METADATA", "DATA"})
+    public String depth;
+
+    @Param({"1", "16", "64"})
+    public int probeConcurrency;
+
+    @Param({"250"})
+    public int contentBatchSize;
+
+    private InMemoryNessie nessie;
+    private Path warehouse;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        nessie = new InMemoryNessie();
+        warehouse = Tools.createWarehouse();
+        Tools.run("generate-tables", "local", "--nessie-uri=" + nessie.uri(), "--warehouse=" + warehouse,
+                "--tables-count=" + catalogSize, "--snapshots-count=2", "--commit-batch-size=100");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        nessie.close();
+        Tools.deleteWarehouse(warehouse);
+    }
+
+    @Benchmark
+    public void checkAccessibility() {
+        Tools.run("check-accessibility", "fileio", "--nessie-uri=" + nessie.uri(), "--io-impl=hadoop",
+                "--depth=" + depth, "--probe-concurrency=" + probeConcurrency, "--content-batch-size=" + contentBatchSize);
+    }
+}
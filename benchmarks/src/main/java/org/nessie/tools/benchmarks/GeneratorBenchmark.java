@@ -0,0 +1,70 @@
+package org.nessie.tools.benchmarks;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times a run of {@code generate-tables local}. Every iteration starts from a fresh Nessie holding {@code catalogSize}
+ * tables and an empty warehouse. With zero snapshots it measures the table creations alone, otherwise mostly the
+ * snapshot appends.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GeneratorBenchmark {
+
+    @Param({"0", "10000"})
+    public int catalogSize;
+
+    @Param({"200"})
+    public int tables;
+
+    @Param({"0", "4"})
+    public int snapshots;
+
+    @Param({"1", "16"})
+    public int concurrency;
+
+    @Param({"0", "50"})
+    public int commitBatchSize;
+
+    private InMemoryNessie nessie;
+    private Path warehouse;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        nessie = new InMemoryNessie();
+        nessie.seedTables("seeded_", catalogSize);
+        warehouse = Tools.createWarehouse();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        nessie.close();
+        Tools.deleteWarehouse(warehouse);
+    }
+
+    @Benchmark
+    public void generateTables() {
+        Tools.run("generate-tables", "local", "--nessie-uri=" + nessie.uri(), "--warehouse=" + warehouse,
+                "--tables-count=" + tables, "--snapshots-count=" + snapshots, "--concurrency=" + concurrency,
+                "--commit-batch-size=" + commitBatchSize);
+    }
+}
@@ -0,0 +1,409 @@
+package org.nessie.tools.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.projectnessie.api.v2.params.Merge;
+import org.projectnessie.api.v2.params.ParsedReference;
+import org.projectnessie.api.v2.params.ReferenceResolver;
+import org.projectnessie.error.ErrorCode;
+import org.projectnessie.error.ImmutableNessieError;
+import org.projectnessie.model.Branch;
+import org.projectnessie.model.CommitMeta;
+import org.projectnessie.model.CommitResponse;
+import org.projectnessie.model.Content;
+import org.projectnessie.model.ContentKey;
+import org.projectnessie.model.ContentResponse;
+import org.projectnessie.model.Detached;
+import org.projectnessie.model.DiffResponse;
+import org.projectnessie.model.EntriesResponse;
+import org.projectnessie.model.GetMultipleContentsRequest;
+import org.projectnessie.model.GetMultipleContentsResponse;
+import org.projectnessie.model.IcebergTable;
+import org.projectnessie.model.ImmutableCommitResponse;
+import org.projectnessie.model.ImmutableGetMultipleContentsResponse;
+import org.projectnessie.model.ImmutableLogEntry;
+import org.projectnessie.model.ImmutableMergeResponse;
+import org.projectnessie.model.ImmutableNessieConfiguration;
+import org.projectnessie.model.LogResponse;
+import org.projectnessie.model.MergeResponse;
+import org.projectnessie.model.Operation;
+import org.projectnessie.model.Operations;
+import org.projectnessie.model.Reference;
+import org.projectnessie.model.ReferencesResponse;
+import org.projectnessie.model.SingleReferenceResponse;
+import org.projectnessie.model.Tag;
+import org.projectnessie.model.ser.Views;
+
+/**
+ * In-process stand-in for a Nessie server, serving the parts of the v2 REST API used by the Nessie client, the Iceberg
+ * Nessie catalog and the tools from an {@link InMemoryVersionStore}. It removes the network and the persistence of a
+ * real server from the benchmarks, so that they measure the tools themselves and give the same numbers offline.
+ */
+class InMemoryNessie implements AutoCloseable {
+
+    private static final String API_PATH = "/api/v2/";
+    private static final int DEFAULT_PAGE_SIZE = 250;
+    private static final int SEED_BATCH_SIZE = 1000;
+
+    private final InMemoryVersionStore store = new InMemoryVersionStore("main");
+    private final ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    InMemoryNessie() {
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "nessie-in-memory");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext(API_PATH, this::handle);
+        server.start();
+    }
+
+    URI uri() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/api/v2");
+    }
+
+    /**
+     * Commits the given number of tables to the default branch, in batches, without any files behind them. They only
+     * make the catalog larger, for the tools to work against a realistic number of entries.
+     */
+    void seedTables(String prefix, int count) {
+        for (int start = 0; start < count; start += SEED_BATCH_SIZE) {
+            List<Operation> operations = new ArrayList<>();
+            for (int i = start; i < Math.min(count, start + SEED_BATCH_SIZE); i++) {
+                String location = "file:///nonexistent/" + prefix + i + "/metadata/00000.metadata.json";
+                operations.add(Operation.Put.of(ContentKey.of(prefix + i), IcebergTable.of(location, 1, 0, 0, 0)));
+            }
+            store.commit(store.defaultBranch(), null, CommitMeta.fromMessage("Seeded " + operations.size() + " tables"),
+                    operations, new HashMap<>());
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int status = 200;
+        Object response;
+        // The client compresses the request bodies
+        boolean gzip = "gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"));
+        try (InputStream body = gzip ? new GZIPInputStream(exchange.getRequestBody()) : exchange.getRequestBody()) {
+            response = route(exchange.getRequestMethod(), exchange.getRequestURI(), body);
+        } catch (InMemoryVersionStore.StoreException e) {
+            status = e.errorCode.httpStatus();
+            response = error(e.errorCode, e.getMessage());
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            status = ErrorCode.BAD_REQUEST.httpStatus();
+            response = error(ErrorCode.BAD_REQUEST, e.getMessage());
+        } catch (RuntimeException e) {
+            status = 500;
+            response = error(ErrorCode.UNKNOWN, e.toString());
+        }
+
+        byte[] bytes = mapper.writerWithView(Views.V2.class).writeValueAsBytes(response);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private Object route(String method, URI uri, InputStream body) throws IOException {
+        List<String> path = Arrays.asList(uri.getRawPath().substring(API_PATH.length()).split("/"));
+        Map<String, String> params = params(uri.getRawQuery());
+        String endpoint = path.size() > 2 ? path.get(0) + "/*/" + String.join("/", path.subList(2, path.size()))
+                : path.size() == 2 ? path.get(0) + "/*" : path.get(0);
+        if (endpoint.startsWith("trees/*/contents/")) {
+            endpoint = "trees/*/contents/*";
+        } else if (endpoint.startsWith("trees/*/diff/")) {
+            endpoint = "trees/*/diff/*";
+        }
+
+        switch (method + " " + endpoint) {
+            case "GET config":
+                return ImmutableNessieConfiguration.builder().defaultBranch(store.defaultBranch()).minSupportedApiVersion(1)
+                        .maxSupportedApiVersion(2).actualApiVersion(2).specVersion("2.1.0")
+                        .noAncestorHash(InMemoryVersionStore.NO_ANCESTOR_HASH).build();
+            case "GET trees":
+                return references(params);
+            case "POST trees": {
+                Reference source = mapper.readerWithView(Views.V2.class).readValue(body, Reference.class);
+                Reference.ReferenceType type = Reference.ReferenceType.valueOf(params.getOrDefault("type", "BRANCH").toUpperCase());
+                return SingleReferenceResponse.builder().reference(store.createReference(params.get("name"), type, source.getHash())).build();
+            }
+            case "GET trees/*":
+                return SingleReferenceResponse.builder().reference(resolve(path.get(1)).reference).build();
+            case "DELETE trees/*": {
+                ParsedReference ref = parse(path.get(1));
+                return SingleReferenceResponse.builder().reference(store.deleteReference(ref.name(), hash(ref))).build();
+            }
+            case "GET trees/*/entries":
+                return entries(resolve(path.get(1)), params);
+            case "GET trees/*/contents/*": {
+                Resolved ref = resolve(path.get(1));
+                ContentKey key = ContentKey.fromPathString(decode(path.get(3)));
+                Content content = store.content(ref.commit, key);
+                if (content == null) {
+                    throw new InMemoryVersionStore.StoreException(ErrorCode.CONTENT_NOT_FOUND, "Content for key '" + key + "' not found");
+                }
+                return ContentResponse.builder().content(content).effectiveReference(ref.reference).build();
+            }
+            case "POST trees/*/contents": {
+                Resolved ref = resolve(path.get(1));
+                GetMultipleContentsRequest request = mapper.readValue(body, GetMultipleContentsRequest.class);
+                List<GetMultipleContentsResponse.ContentWithKey> contents = new ArrayList<>();
+                for (ContentKey key : request.getRequestedKeys()) {
+                    Content content = store.content(ref.commit, key);
+                    if (content != null) {
+                        contents.add(GetMultipleContentsResponse.ContentWithKey.of(key, content));
+                    }
+                }
+                return ImmutableGetMultipleContentsResponse.builder().contents(contents).effectiveReference(ref.reference).build();
+            }
+            case "GET trees/*/history":
+                return history(resolve(path.get(1)), params);
+            case "POST trees/*/history/commit": {
+                ParsedReference ref = parse(path.get(1));
+                Operations operations = mapper.readerWithView(Views.V2.class).readValue(body, Operations.class);
+                Map<ContentKey, String> added = new LinkedHashMap<>();
+                InMemoryVersionStore.Commit commit = store.commit(ref.name(), hash(ref), operations.getCommitMeta(),
+                        operations.getOperations(), added);
+                ImmutableCommitResponse.Builder response = CommitResponse.builder().targetBranch(Branch.of(ref.name(), commit.hash));
+                added.forEach((key, id) -> response.addAddedContents(CommitResponse.AddedContent.addedContent(key, id)));
+                return response.build();
+            }
+            case "POST trees/*/history/merge":
+                return merge(parse(path.get(1)), mapper.readerWithView(Views.V2.class).readValue(body, Merge.class));
+            case "GET trees/*/diff/*":
+                return diff(resolve(path.get(1)), resolve(path.get(3)), params);
+            default:
+                throw new InMemoryVersionStore.StoreException(ErrorCode.BAD_REQUEST, "Unsupported request: " + method + " " + uri.getPath());
+        }
+    }
+
+    private ReferencesResponse references(Map<String, String> params) {
+        List<Reference> references = store.references();
+        references.sort(Comparator.comparing(Reference::getName));
+        int offset = params.containsKey("page-token") ? Integer.parseInt(params.get("page-token")) : 0;
+        int end = Math.min(references.size(), offset + pageSize(params));
+        return ReferencesResponse.builder().references(references.subList(offset, end)).isHasMore(end < references.size())
+                .token(end < references.size() ? String.valueOf(end) : null).build();
+    }
+
+    private EntriesResponse entries(Resolved ref, Map<String, String> params) {
+        NavigableMap<ContentKey, Content> tree = store.tree(ref.commit);
+        if (params.containsKey("prefix-key")) {
+            tree = tree.tailMap(ContentKey.fromPathString(params.get("prefix-key")), true);
+        }
+        if (params.containsKey("min-key")) {
+            tree = tree.tailMap(ContentKey.fromPathString(params.get("min-key")), true);
+        }
+        if (params.containsKey("max-key")) {
+            tree = tree.headMap(ContentKey.fromPathString(params.get("max-key")), true);
+        }
+        // The last key of a page is the token of the next one, pages stay consistent while the branch moves
+        if (params.containsKey("page-token")) {
+            tree = tree.tailMap(ContentKey.fromPathString(params.get("page-token")), false);
+        }
+
+        boolean withContent = Boolean.parseBoolean(params.get("content"));
+        List<String> prefix = params.containsKey("prefix-key")
+                ? ContentKey.fromPathString(params.get("prefix-key")).getElements() : List.of();
+        List<EntriesResponse.Entry> entries = new ArrayList<>();
+        ContentKey last = null;
+        boolean hasMore = false;
+        for (Map.Entry<ContentKey, Content> e : tree.entrySet()) {
+            List<String> elements = e.getKey().getElements();
+            if (elements.size() < prefix.size() || !elements.subList(0, prefix.size()).equals(prefix)) {
+                break;
+            }
+            if (entries.size() == pageSize(params)) {
+                hasMore = true;
+                break;
+            }
+            Content content = e.getValue();
+            entries.add(withContent ? EntriesResponse.Entry.entry(e.getKey(), content.getType(), content)
+                    : EntriesResponse.Entry.entry(e.getKey(), content.getType(), content.getId()));
+            last = e.getKey();
+        }
+        return EntriesResponse.builder().entries(entries).isHasMore(hasMore).token(hasMore ? last.toPathString() : null)
+                .effectiveReference(ref.reference).build();
+    }
+
+    private LogResponse history(Resolved ref, Map<String, String> params) {
+        boolean withOperations = "ALL".equalsIgnoreCase(params.get("fetch"));
+        String limitHash = params.get("limit-hash");
+        InMemoryVersionStore.Commit commit = params.containsKey("page-token") ? store.commit(params.get("page-token")) : ref.commit;
+        List<LogResponse.LogEntry> entries = new ArrayList<>();
+        for (; commit.parent != null && entries.size() < pageSize(params); commit = commit.parent) {
+            ImmutableLogEntry.Builder entry = LogResponse.LogEntry.builder().commitMeta(commit.meta).parentCommitHash(commit.parent.hash);
+            if (withOperations) {
+                commit.operations().forEach(entry::addOperations);
+            }
+            entries.add(entry.build());
+            if (commit.hash.equals(limitHash)) {
+                commit = commit.parent;
+                while (commit.parent != null) {
+                    commit = commit.parent;
+                }
+                break;
+            }
+        }
+        boolean hasMore = commit.parent != null;
+        return LogResponse.builder().logEntries(entries).isHasMore(hasMore).token(hasMore ? commit.hash : null).build();
+    }
+
+    private MergeResponse merge(ParsedReference target, Merge merge) {
+        CommitMeta meta = merge.getCommitMeta() != null ? merge.getCommitMeta()
+                : CommitMeta.fromMessage("Merged " + merge.getFromRefName());
+        String expectedHash = hash(target);
+        InMemoryVersionStore.MergeResult result = store.merge(target.name(), expectedHash, merge.getFromHash(), meta);
+        return ImmutableMergeResponse.builder().wasApplied(result.applied).wasSuccessful(true).targetBranch(target.name())
+                .resultantTargetHash(result.head.hash).commonAncestor(result.commonAncestor.hash)
+                .effectiveTargetHash(result.head.hash).expectedHash(expectedHash).build();
+    }
+
+    private DiffResponse diff(Resolved from, Resolved to, Map<String, String> params) {
+        Set<String> fromAncestors = new HashSet<>();
+        for (InMemoryVersionStore.Commit c = from.commit; c != null; c = c.parent) {
+            fromAncestors.add(c.hash);
+        }
+        InMemoryVersionStore.Commit commonAncestor = to.commit;
+        while (!fromAncestors.contains(commonAncestor.hash)) {
+            commonAncestor = commonAncestor.parent;
+        }
+        TreeSet<ContentKey> keys = new TreeSet<>();
+        for (InMemoryVersionStore.Commit c = from.commit; c != commonAncestor; c = c.parent) {
+            keys.addAll(c.changes.keySet());
+        }
+        for (InMemoryVersionStore.Commit c = to.commit; c != commonAncestor; c = c.parent) {
+            keys.addAll(c.changes.keySet());
+        }
+
+        Set<ContentKey> remaining = params.containsKey("page-token")
+                ? keys.tailSet(ContentKey.fromPathString(params.get("page-token")), false) : keys;
+        List<DiffResponse.DiffEntry> diffs = new ArrayList<>();
+        ContentKey last = null;
+        boolean hasMore = false;
+        for (ContentKey key : remaining) {
+            Content fromContent = store.content(from.commit, key);
+            Content toContent = store.content(to.commit, key);
+            if (fromContent == null ? toContent == null : fromContent.equals(toContent)) {
+                continue;
+            }
+            if (diffs.size() == pageSize(params)) {
+                hasMore = true;
+                break;
+            }
+            diffs.add(DiffResponse.DiffEntry.diffEntry(key, fromContent, toContent));
+            last = key;
+        }
+        return DiffResponse.builder().diffs(diffs).isHasMore(hasMore).token(hasMore ? last.toPathString() : null)
+                .effectiveFromReference(from.reference).effectiveToReference(to.reference).build();
+    }
+
+    private ParsedReference parse(String pathElement) {
+        return ReferenceResolver.resolveReferencePathElement(decode(pathElement), null, store::defaultBranch);
+    }
+
+    /**
+     * Hash of a reference path element, without the relative parts which the tools do not use.
+     */
+    private static String hash(ParsedReference ref) {
+        String hash = ref.hashWithRelativeSpec();
+        if (hash == null) {
+            return null;
+        }
+        int end = 0;
+        while (end < hash.length() && Character.digit(hash.charAt(end), 16) >= 0) {
+            end++;
+        }
+        return end > 0 ? hash.substring(0, end) : null;
+    }
+
+    private Resolved resolve(String pathElement) {
+        ParsedReference ref = parse(pathElement);
+        String hash = hash(ref);
+        if (ref.name() == null || Detached.REF_NAME.equals(ref.name())) {
+            return new Resolved(Detached.of(hash), store.commit(hash));
+        }
+        Reference reference = store.reference(ref.name());
+        if (hash == null) {
+            return new Resolved(reference, store.commit(reference.getHash()));
+        }
+        return new Resolved(reference.getType() == Reference.ReferenceType.TAG
+                ? Tag.of(ref.name(), hash) : Branch.of(ref.name(), hash), store.commit(hash));
+    }
+
+    private static int pageSize(Map<String, String> params) {
+        return params.containsKey("max-records") ? Integer.parseInt(params.get("max-records")) : DEFAULT_PAGE_SIZE;
+    }
+
+    private static Map<String, String> params(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery != null) {
+            for (String param : rawQuery.split("&")) {
+                int eq = param.indexOf('=');
+                if (eq > 0) {
+                    params.put(decode(param.substring(0, eq)), decode(param.substring(eq + 1)));
+                }
+            }
+        }
+        return params;
+    }
+
+    private static String decode(String s) {
+        return URLDecoder.decode(s, StandardCharsets.UTF_8);
+    }
+
+    private static ImmutableNessieError error(ErrorCode errorCode, String message) {
+        return ImmutableNessieError.builder().status(errorCode.httpStatus()).reason(errorCode.name()).message(message)
+                .errorCode(errorCode).build();
+    }
+
+    private static class Resolved {
+        final Reference reference;
+        final InMemoryVersionStore.Commit commit;
+
+        Resolved(Reference reference, InMemoryVersionStore.Commit commit) {
+            this.reference = reference;
+            this.commit = commit;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package org.nessie.tools.benchmarks;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.projectnessie.error.ErrorCode;
+import org.projectnessie.model.Branch;
+import org.projectnessie.model.CommitMeta;
+import org.projectnessie.model.Content;
+import org.projectnessie.model.ContentKey;
+import org.projectnessie.model.Operation;
+import org.projectnessie.model.Reference;
+import org.projectnessie.model.Tag;
+
+/**
+ * Commits and references of the in-process Nessie, kept in memory. Every commit records the keys it changed, and every
+ * {@link #CHECKPOINT_INTERVAL}th commit also the whole tree, so that committing stays cheap whatever the catalog size and
+ * reading a key walks at most that many commits.
+ */
+class InMemoryVersionStore {
+
+    static final String NO_ANCESTOR_HASH = "2e1cfa82b035c26cbbbdae632cea070514eb8b773f616aaeaf668e2f0be8f10d";
+    private static final int CHECKPOINT_INTERVAL = 64;
+
+    private final String defaultBranch;
+    private final Map<String, Commit> commits = new ConcurrentHashMap<>();
+    private final Map<String, Reference> references = new ConcurrentHashMap<>();
+    // Entries are listed page by page, the tree of the last listed commit is kept for the next pages
+    private volatile Commit lastTreeCommit;
+    private volatile NavigableMap<ContentKey, Content> lastTree;
+
+    InMemoryVersionStore(String defaultBranch) {
+        this.defaultBranch = defaultBranch;
+        Commit root = new Commit(NO_ANCESTOR_HASH, null, null, new LinkedHashMap<>(), new TreeMap<>(), 0);
+        commits.put(root.hash, root);
+        references.put(defaultBranch, Branch.of(defaultBranch, root.hash));
+    }
+
+    String defaultBranch() {
+        return defaultBranch;
+    }
+
+    List<Reference> references() {
+        return new ArrayList<>(references.values());
+    }
+
+    Reference reference(String name) {
+        Reference reference = references.get(name);
+        if (reference == null) {
+            throw new StoreException(ErrorCode.REFERENCE_NOT_FOUND, "Named reference '" + name + "' not found");
+        }
+        return reference;
+    }
+
+    Commit commit(String hash) {
+        Commit commit = commits.get(hash);
+        if (commit == null) {
+            throw new StoreException(ErrorCode.REFERENCE_NOT_FOUND, "Commit '" + hash + "' not found");
+        }
+        return commit;
+    }
+
+    synchronized Reference createReference(String name, Reference.ReferenceType type, String hash) {
+        if (references.containsKey(name)) {
+            throw new StoreException(ErrorCode.REFERENCE_ALREADY_EXISTS, "Named reference '" + name + "' already exists");
+        }
+        commit(hash);
+        Reference reference = type == Reference.ReferenceType.TAG ? Tag.of(name, hash) : Branch.of(name, hash);
+        references.put(name, reference);
+        return reference;
+    }
+
+    synchronized Reference deleteReference(String name, String expectedHash) {
+        Reference reference = reference(name);
+        if (name.equals(defaultBranch)) {
+            throw new StoreException(ErrorCode.BAD_REQUEST, "The default branch cannot be deleted");
+        }
+        if (expectedHash != null && !expectedHash.equals(reference.getHash())) {
+            throw new StoreException(ErrorCode.REFERENCE_CONFLICT, "Named reference '" + name + "' is not at the expected hash");
+        }
+        references.remove(name);
+        return reference;
+    }
+
+    Content content(Commit commit, ContentKey key) {
+        for (Commit c = commit; ; c = c.parent) {
+            if (c.changes.containsKey(key)) {
+                return c.changes.get(key);
+            }
+            if (c.tree != null) {
+                return c.tree.get(key);
+            }
+        }
+    }
+
+    NavigableMap<ContentKey, Content> tree(Commit commit) {
+        if (commit == lastTreeCommit) {
+            return lastTree;
+        }
+
+        List<Commit> changed = new ArrayList<>();
+        Commit c = commit;
+        for (; c.tree == null; c = c.parent) {
+            changed.add(c);
+        }
+        NavigableMap<ContentKey, Content> tree = new TreeMap<>(c.tree);
+        for (int i = changed.size() - 1; i >= 0; i--) {
+            changed.get(i).changes.forEach((key, content) -> {
+                if (content != null) {
+                    tree.put(key, content);
+                } else {
+                    tree.remove(key);
+                }
+            });
+        }
+        lastTree = tree;
+        lastTreeCommit = commit;
+        return tree;
+    }
+
+    /**
+     * Commits the operations on top of the branch head. As on Nessie, a commit based on an older hash of the branch
+     * goes through as long as none of its keys changed since that hash. Returns the new commit and the ids assigned
+     * to the added contents.
+     */
+    synchronized Commit commit(String branch, String expectedHash, CommitMeta meta, List<Operation> operations,
+                               Map<ContentKey, String> addedContents) {
+        Commit head = commit(reference(branch).getHash());
+        Set<ContentKey> keys = new HashSet<>();
+        operations.forEach(o -> keys.add(o.getKey()));
+        checkUnchangedSince(head, expectedHash, keys);
+
+        Map<ContentKey, Content> changes = new LinkedHashMap<>();
+        for (Operation operation : operations) {
+            Content current = content(head, operation.getKey());
+            if (operation instanceof Operation.Put) {
+                Content content = ((Operation.Put) operation).getContent();
+                if (content.getId() == null) {
+                    if (current != null) {
+                        throw conflict("Key '" + operation.getKey() + "' already exists");
+                    }
+                    content = content.withId(UUID.randomUUID().toString());
+                    addedContents.put(operation.getKey(), content.getId());
+                } else if (current == null || !current.getId().equals(content.getId())) {
+                    throw conflict("Content id of key '" + operation.getKey() + "' does not match");
+                }
+                changes.put(operation.getKey(), content);
+            } else if (operation instanceof Operation.Delete) {
+                if (current == null) {
+                    throw conflict("Key '" + operation.getKey() + "' does not exist");
+                }
+                changes.put(operation.getKey(), null);
+            }
+        }
+        return append(branch, head, meta, changes);
+    }
+
+    /**
+     * Applies the changes of the source commit since the common ancestor on top of the target branch, with a single
+     * commit, unless the target changed the same keys meanwhile.
+     */
+    synchronized MergeResult merge(String branch, String expectedHash, String fromHash, CommitMeta meta) {
+        Commit head = commit(reference(branch).getHash());
+        Commit from = commit(fromHash);
+        Set<String> sourceAncestors = new HashSet<>();
+        for (Commit c = from; c != null; c = c.parent) {
+            sourceAncestors.add(c.hash);
+        }
+        Commit commonAncestor = head;
+        while (!sourceAncestors.contains(commonAncestor.hash)) {
+            commonAncestor = commonAncestor.parent;
+        }
+
+        Set<ContentKey> sourceKeys = changedKeys(from, commonAncestor);
+        Set<ContentKey> targetKeys = changedKeys(head, commonAncestor);
+        targetKeys.retainAll(sourceKeys);
+        if (!targetKeys.isEmpty()) {
+            throw conflict("Keys changed on both sides of the merge: " + targetKeys);
+        }
+        checkUnchangedSince(head, expectedHash, sourceKeys);
+        if (sourceKeys.isEmpty()) {
+            return new MergeResult(head, commonAncestor, false);
+        }
+
+        Map<ContentKey, Content> changes = new LinkedHashMap<>();
+        sourceKeys.forEach(key -> changes.put(key, content(from, key)));
+        return new MergeResult(append(branch, head, meta, changes), commonAncestor, true);
+    }
+
+    private void checkUnchangedSince(Commit head, String expectedHash, Set<ContentKey> keys) {
+        if (expectedHash == null || expectedHash.equals(head.hash)) {
+            return;
+        }
+        Commit expected = commit(expectedHash);
+        for (Commit c = head; c != expected; c = c.parent) {
+            if (c.parent == null) {
+                throw conflict("Hash '" + expectedHash + "' is not an ancestor of the branch head");
+            }
+            for (ContentKey key : keys) {
+                if (c.changes.containsKey(key)) {
+                    throw conflict("Key '" + key + "' changed since hash '" + expectedHash + "'");
+                }
+            }
+        }
+    }
+
+    private static Set<ContentKey> changedKeys(Commit commit, Commit ancestor) {
+        Set<ContentKey> keys = new HashSet<>();
+        for (Commit c = commit; c != ancestor; c = c.parent) {
+            keys.addAll(c.changes.keySet());
+        }
+        return keys;
+    }
+
+    private Commit append(String branch, Commit head, CommitMeta meta, Map<ContentKey, Content> changes) {
+        String hash = newHash();
+        Instant now = Instant.now();
+        CommitMeta committed = CommitMeta.builder().from(meta).hash(hash).committer("").commitTime(now)
+                .authorTime(meta.getAuthorTime() != null ? meta.getAuthorTime() : now)
+                .parentCommitHashes(List.of(head.hash)).build();
+        int depth = head.depth + 1;
+        Commit commit = new Commit(hash, head, committed, changes, null, depth);
+        if (depth % CHECKPOINT_INTERVAL == 0) {
+            commit = new Commit(hash, head, committed, changes, new TreeMap<>(tree(commit)), depth);
+        }
+        commits.put(hash, commit);
+        references.put(branch, Branch.of(branch, hash));
+        return commit;
+    }
+
+    private static String newHash() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return String.format("%016x%016x%016x%016x", random.nextLong(), random.nextLong(), random.nextLong(), random.nextLong());
+    }
+
+    private static StoreException conflict(String message) {
+        return new StoreException(ErrorCode.REFERENCE_CONFLICT, message);
+    }
+
+    static class Commit {
+        final String hash;
+        final Commit parent;
+        final CommitMeta meta;
+        // Changed keys, deleted ones map to null
+        final Map<ContentKey, Content> changes;
+        final NavigableMap<ContentKey, Content> tree;
+        final int depth;
+
+        Commit(String hash, Commit parent, CommitMeta meta, Map<ContentKey, Content> changes,
+               NavigableMap<ContentKey, Content> tree, int depth) {
+            this.hash = hash;
+            this.parent = parent;
+            this.meta = meta;
+            this.changes = changes;
+            this.tree = tree;
+            this.depth = depth;
+        }
+
+        List<Operation> operations() {
+            List<Operation> operations = new ArrayList<>();
+            changes.forEach((key, content) -> operations.add(content != null ? Operation.Put.of(key, content) : Operation.Delete.of(key)));
+            return operations;
+        }
+    }
+
+    static class MergeResult {
+        final Commit head;
+        final Commit commonAncestor;
+        final boolean applied;
+
+        MergeResult(Commit head, Commit commonAncestor, boolean applied) {
+            this.head = head;
+            this.commonAncestor = commonAncestor;
+            this.applied = applied;
+        }
+    }
+
+    /**
+     * Failure reported to the client as a Nessie error.
+     */
+    static class StoreException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final ErrorCode errorCode;
+
+        StoreException(ErrorCode errorCode, String message) {
+            super(message);
+            this.errorCode = errorCode;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.nessie.tools.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.nessie.tools.CLI;
+
+import picocli.CommandLine;
+
+/**
+ * Runs the commands of the tools in process, as {@link CLI} would. Their output is discarded while they run, so that
+ * printing the result of every table is not part of the measurements.
+ */
+final class Tools {
+
+    private Tools() {
+    }
+
+    static void run(String... args) {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            CommandLine commandLine = new CommandLine(new CLI());
+            commandLine.setCaseInsensitiveEnumValuesAllowed(true);
+            int exitCode = commandLine.execute(args);
+            if (exitCode != 0) {
+                throw new IllegalStateException("Command failed with exit code " + exitCode + ": " + String.join(" ", args));
+            }
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    static Path createWarehouse() {
+        try {
+            return Files.createTempDirectory("gentool-benchmark");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void deleteWarehouse(Path warehouse) {
+        try (Stream<Path> paths = Files.walk(warehouse)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package org.nessie.tools.benchmarks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.projectnessie.client.api.NessieApiV2;
+import org.projectnessie.client.http.HttpClientBuilder;
+import org.projectnessie.error.NessieBadRequestException;
+import org.projectnessie.error.NessieConflictException;
+import org.projectnessie.error.NessieNotFoundException;
+import org.projectnessie.model.Branch;
+import org.projectnessie.model.CommitMeta;
+import org.projectnessie.model.Content;
+import org.projectnessie.model.ContentKey;
+import org.projectnessie.model.DiffResponse;
+import org.projectnessie.model.EntriesResponse;
+import org.projectnessie.model.FetchOption;
+import org.projectnessie.model.IcebergTable;
+import org.projectnessie.model.LogResponse;
+import org.projectnessie.model.Operation;
+import org.projectnessie.model.Reference;
+
+/**
+ * Runs the Nessie client operations used by the tools against the in-memory Nessie, and the tools themselves, so that
+ * the stand-in keeps answering them as a Nessie server would.
+ */
+class InMemoryNessieTest {
+
+    private InMemoryNessie nessie;
+    private NessieApiV2 api;
+
+    @BeforeEach
+    void setUp() {
+        nessie = new InMemoryNessie();
+        api = HttpClientBuilder.builder().withUri(nessie.uri()).build(NessieApiV2.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        api.close();
+        nessie.close();
+    }
+
+    @Test
+    void defaultBranch() throws Exception {
+        Branch main = api.getDefaultBranch();
+        assertEquals("main", main.getName());
+        assertEquals(InMemoryVersionStore.NO_ANCESTOR_HASH, main.getHash());
+        assertEquals("main", api.getConfig().getDefaultBranch());
+    }
+
+    @Test
+    void createAndListReferences() throws Exception {
+        Branch main = commit(api.getDefaultBranch(), put("t1"));
+        for (int i = 0; i < 5; i++) {
+            api.createReference().sourceRefName("main").reference(Branch.of("b" + i, main.getHash())).create();
+        }
+        assertThrows(NessieConflictException.class,
+                () -> api.createReference().sourceRefName("main").reference(Branch.of("b0", main.getHash())).create());
+
+        List<String> names = api.getAllReferences().maxRecords(2).stream().map(Reference::getName).collect(Collectors.toList());
+        assertEquals(List.of("b0", "b1", "b2", "b3", "b4", "main"), names);
+        assertEquals(main.getHash(), api.getReference().refName("b3").get().getHash());
+        assertThrows(NessieNotFoundException.class, () -> api.getReference().refName("missing").get());
+    }
+
+    @Test
+    void deleteReference() throws Exception {
+        Branch main = api.getDefaultBranch();
+        Branch branch = (Branch) api.createReference().sourceRefName("main").reference(Branch.of("b", main.getHash())).create();
+        commit(branch, put("t1"));
+
+        assertThrows(NessieConflictException.class, () -> api.deleteReference().reference(branch).delete());
+        api.deleteReference().reference(api.getReference().refName("b").get()).delete();
+        assertThrows(NessieNotFoundException.class, () -> api.getReference().refName("b").get());
+        assertThrows(NessieBadRequestException.class, () -> api.deleteReference().reference(main).delete());
+    }
+
+    @Test
+    void commitAssignsContentIds() throws Exception {
+        Branch main = commit(api.getDefaultBranch(), put("t1"), put("t2"));
+        Map<ContentKey, Content> contents = api.getContent().reference(main)
+                .keys(List.of(ContentKey.of("t1"), ContentKey.of("t2"), ContentKey.of("missing"))).get();
+        assertEquals(2, contents.size());
+        assertNotNull(contents.get(ContentKey.of("t1")).getId());
+        assertEquals(contents.get(ContentKey.of("t1")), api.getContent().reference(main).getSingle(ContentKey.of("t1")).getContent());
+        assertThrows(NessieNotFoundException.class, () -> api.getContent().reference(main).getSingle(ContentKey.of("missing")));
+
+        // New contents of an existing key need its id
+        assertThrows(NessieConflictException.class, () -> commit(main, put("t1")));
+        IcebergTable updated = IcebergTable.builder().from(contents.get(ContentKey.of("t1")))
+                .metadataLocation("file:///t1/metadata/00001.metadata.json").build();
+        Branch updatedMain = commit(main, Operation.Put.of(ContentKey.of("t1"), updated));
+        assertEquals(updated, api.getContent().reference(updatedMain).getSingle(ContentKey.of("t1")).getContent());
+    }
+
+    @Test
+    void commitOnOlderHashConflictsOnChangedKeys() throws Exception {
+        Branch base = commit(api.getDefaultBranch(), put("t1"));
+        commit(base, put("t2"));
+
+        // The head moved, only commits changing other keys than the ones changed since go through
+        assertThrows(NessieConflictException.class, () -> commit(base, Operation.Delete.of(ContentKey.of("t2"))));
+        Branch head = commit(base, put("t3"));
+        assertEquals(3, api.getEntries().reference(head).get().getEntries().size());
+        assertThrows(NessieConflictException.class, () -> commit(head, Operation.Delete.of(ContentKey.of("missing"))));
+    }
+
+    @Test
+    void entriesPages() throws Exception {
+        nessie.seedTables("table", 1234);
+        Branch main = api.getDefaultBranch();
+
+        List<EntriesResponse.Entry> entries = api.getEntries().reference(main).withContent(true).maxRecords(100)
+                .stream().collect(Collectors.toList());
+        assertEquals(1234, entries.size());
+        assertEquals(1234, entries.stream().map(EntriesResponse.Entry::getName).distinct().count());
+        assertTrue(entries.stream().allMatch(e -> e.getContent() instanceof IcebergTable));
+        assertTrue(api.getEntries().reference(main).stream().allMatch(e -> e.getContent() == null));
+    }
+
+    @Test
+    void mergeBranch() throws Exception {
+        Branch main = commit(api.getDefaultBranch(), put("t1"));
+        Branch branch = (Branch) api.createReference().sourceRefName("main").reference(Branch.of("b", main.getHash())).create();
+        branch = commit(branch, put("t2"), put("t3"));
+        main = commit(main, put("t4"));
+
+        api.mergeRefIntoBranch().branch(main).fromRef(branch).merge();
+        main = api.getDefaultBranch();
+        assertEquals(4, api.getEntries().reference(main).get().getEntries().size());
+
+        // Both sides changing the same key
+        Branch conflicting = (Branch) api.createReference().sourceRefName("main").reference(Branch.of("c", main.getHash())).create();
+        Content t1 = api.getContent().reference(main).getSingle(ContentKey.of("t1")).getContent();
+        conflicting = commit(conflicting, Operation.Delete.of(ContentKey.of("t1")));
+        commit(main, Operation.Put.of(ContentKey.of("t1"), IcebergTable.builder().from(t1).snapshotId(2).build()));
+        Branch source = conflicting;
+        assertThrows(NessieConflictException.class,
+                () -> api.mergeRefIntoBranch().branch(api.getDefaultBranch()).fromRef(source).merge());
+    }
+
+    @Test
+    void diffPages() throws Exception {
+        Branch from = commit(api.getDefaultBranch(), put("t0"), put("t1"));
+        Content t1 = api.getContent().reference(from).getSingle(ContentKey.of("t1")).getContent();
+        Branch to = commit(from, put("t2"), put("t3"), put("t4"), Operation.Delete.of(ContentKey.of("t0")),
+                Operation.Put.of(ContentKey.of("t1"), IcebergTable.builder().from(t1).snapshotId(2).build()));
+
+        List<DiffResponse.DiffEntry> diffs = api.getDiff().fromRef(from).toRef(to).maxRecords(2).stream()
+                .collect(Collectors.toList());
+        assertEquals(List.of("t0", "t1", "t2", "t3", "t4"),
+                diffs.stream().map(d -> d.getKey().toPathString()).collect(Collectors.toList()));
+        assertNull(diffs.get(0).getTo());
+        assertNull(diffs.get(2).getFrom());
+        assertEquals(0, api.getDiff().fromRef(to).toRef(to).get().getDiffs().size());
+    }
+
+    @Test
+    void commitLogPages() throws Exception {
+        Branch main = api.getDefaultBranch();
+        String firstHash = null;
+        for (int i = 0; i < 10; i++) {
+            main = commit(main, put("t" + i));
+            firstHash = firstHash == null ? main.getHash() : firstHash;
+        }
+
+        List<LogResponse.LogEntry> log = api.getCommitLog().reference(main).maxRecords(3).fetch(FetchOption.ALL).stream()
+                .collect(Collectors.toList());
+        assertEquals(10, log.size());
+        assertEquals(main.getHash(), log.get(0).getCommitMeta().getHash());
+        assertTrue(log.get(0).getOperations().get(0) instanceof Operation.Put);
+        assertEquals(InMemoryVersionStore.NO_ANCESTOR_HASH, log.get(9).getParentCommitHash());
+        assertEquals(10, api.getCommitLog().reference(main).untilHash(firstHash).stream().count());
+        assertFalse(api.getCommitLog().reference(main).maxRecords(3).get().getLogEntries().isEmpty());
+    }
+
+    @Test
+    void tools() throws Exception {
+        Path warehouse = Tools.createWarehouse();
+        try {
+            String nessieUri = "--nessie-uri=" + nessie.uri();
+            Tools.run("generate-tables", "local", nessieUri, "--warehouse=" + warehouse, "--tables-count=6",
+                    "--snapshots-count=2", "--commit-batch-size=4");
+            assertEquals(6, api.getEntries().refName("main").stream().count());
+            Tools.run("check-accessibility", "fileio", nessieUri, "--depth=DATA");
+            Tools.run("cleanup-tables", "local", nessieUri, "--yes");
+            assertEquals(0, api.getEntries().refName("main").stream().count());
+        } finally {
+            Tools.deleteWarehouse(warehouse);
+        }
+    }
+
+    private Branch commit(Branch branch, Operation... operations) throws NessieNotFoundException, NessieConflictException {
+        return api.commitMultipleOperations().branch(branch).commitMeta(CommitMeta.fromMessage("test"))
+                .operations(List.of(operations)).commit();
+    }
+
+    private static Operation put(String name) {
+        return Operation.Put.of(ContentKey.of(name), IcebergTable.of("file:///" + name + "/metadata/00000.metadata.json", 1, 0, 0, 0));
+    }
+}
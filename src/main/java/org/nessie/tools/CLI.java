@@ -1,16 +1,30 @@
 package org.nessie.tools;
 
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+
 import org.nessie.tools.analyzer.AccessibilityCheckCLI;
+import org.nessie.tools.cleanup.TableCleanupCLI;
 import org.nessie.tools.generator.ContentGenCLI;
 
 import picocli.CommandLine;
 
 @CommandLine.Command(name = "nessie-dev-tools", mixinStandardHelpOptions = true,
-        subcommands = {ContentGenCLI.class, AccessibilityCheckCLI.class}, showDefaultValues = true)
+        subcommands = {ContentGenCLI.class, AccessibilityCheckCLI.class, TableCleanupCLI.class}, showDefaultValues = true)
 public class CLI {
+    private static final int STDOUT_BUFFER_SIZE = 1 << 16;
+
     public static void main(String args[]) {
+        // Buffered, so that the threads printing the results of every table do not contend on every line. The metrics
+        // reporter flushes it periodically
+        System.setOut(new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), STDOUT_BUFFER_SIZE), false));
+        Runtime.getRuntime().addShutdownHook(new Thread(System.out::flush));
+
         CommandLine commandLine = new CommandLine(new CLI());
         commandLine.setUsageHelpWidth(150);
+        commandLine.setCaseInsensitiveEnumValuesAllowed(true);
 
         commandLine.execute(args);
     }
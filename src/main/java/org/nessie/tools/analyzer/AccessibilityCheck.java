@@ -1,18 +1,49 @@
 package org.nessie.tools.analyzer;
 
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 import java.net.URI;
-import java.util.HashSet;
-import java.util.Set;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.apache.iceberg.io.FileIO;
+import org.nessie.tools.metrics.Metrics;
+import org.nessie.tools.metrics.MetricsOptions;
+import org.nessie.tools.metrics.MetricsReporter;
+import org.projectnessie.client.api.GetCommitLogBuilder;
 import org.projectnessie.client.api.NessieApiV2;
 import org.projectnessie.client.http.HttpClientBuilder;
 import org.projectnessie.error.NessieNotFoundException;
 import org.projectnessie.model.Content;
+import org.projectnessie.model.ContentKey;
+import org.projectnessie.model.Detached;
+import org.projectnessie.model.DiffResponse;
+import org.projectnessie.model.EntriesResponse;
 import org.projectnessie.model.FetchOption;
 import org.projectnessie.model.IcebergTable;
+import org.projectnessie.model.LogResponse;
 import org.projectnessie.model.Operation;
 import org.projectnessie.model.Reference;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
 import picocli.CommandLine;
 
 /**
@@ -22,6 +53,10 @@ public abstract class AccessibilityCheck implements Runnable {
 
     protected enum Status {SUCCESS, NOT_FOUND, ACCESS_DENIED, ERROR;}
 
+    protected enum Depth {METADATA, MANIFESTS, DATA}
+
+    private static final double MB = 1024 * 1024;
+
     @CommandLine.Option(names = {"--nessie-uri"}, order = 1, defaultValue = "http://localhost:19120/api/v2", description = {"Http URI path for Nessie, defaults to http://localhost:19120/api/v2"})
     protected URI nessieUri;
 
@@ -33,81 +68,333 @@ public abstract class AccessibilityCheck implements Runnable {
             description = {"Only checks the latest table states on the branch heads. If set to false, the code will parse through all commits in the branch."})
     protected boolean checkOnlyHeads = true;
 
+    @CommandLine.Option(names = {"--cache-size"}, defaultValue = "1000000",
+            description = {"Maximum number of metadata locations whose check result is kept, so that table states shared by references and commits are checked only once."})
+    protected long cacheSize;
+
+    @CommandLine.Option(names = {"--content-batch-size"}, defaultValue = "250",
+            description = {"Number of table entries fetched per page, along with their content, and checked together."})
+    protected int contentBatchSize;
+
+    @CommandLine.Option(names = {"--checkpoint-file"},
+            description = {"File recording the progress of the checks. Later runs only check what changed on every reference since the checkpoint, and an interrupted run resumes from it."})
+    protected Path checkpointFile;
+
+    @CommandLine.Option(names = {"--checkpoint-max-locations"}, defaultValue = "1000000",
+            description = {"Maximum number of verified metadata locations kept in the checkpoint. Locations not used by the latest run are dropped first, defaults to 1000000"})
+    protected long checkpointMaxLocations;
+
+    @CommandLine.Option(names = {"--depth"}, defaultValue = "METADATA",
+            description = {"How deep the tables are checked. METADATA checks the metadata file only, MANIFESTS also the manifest lists and manifests of all snapshots, DATA also their data and delete files. Defaults to METADATA"})
+    protected Depth depth;
+
+    @CommandLine.Option(names = {"--scan-concurrency"}, defaultValue = "64",
+            description = {"Maximum number of concurrent batches of file checks while scanning manifests, defaults to 64"})
+    protected int scanConcurrency;
+
     private NessieApiV2 nessieApi;
 
-    private Set<String> alreadyProcessedCommits = new HashSet<>();
+    @CommandLine.Mixin
+    protected MetricsOptions metricsOptions;
+
+    @CommandLine.Option(names = {"--reference-concurrency"}, defaultValue = "4",
+            description = {"Number of references checked in parallel, defaults to 4"})
+    protected int referenceConcurrency;
+
+    private final CommitHashSet processedCommits = new CommitHashSet();
+
+    private AsyncCache<String, CheckResult> checkResults;
+
+    private CheckpointStore checkpoint;
+
+    private ReachabilityScan reachabilityScan;
 
     protected void setup() {
         setupNessieApi();
+        checkResults = Caffeine.newBuilder().maximumSize(cacheSize).recordStats().buildAsync();
+        if (checkpointFile != null) {
+            checkpoint = CheckpointStore.load(checkpointFile, depth, !checkOnlyHeads, checkpointMaxLocations);
+            // Keeps the progress made so far when the run is interrupted
+            Runtime.getRuntime().addShutdownHook(new Thread(checkpoint::save));
+        }
+        if (depth != Depth.METADATA) {
+            reachabilityScan = new ReachabilityScan(io(), this::checkAll, depth == Depth.DATA, scanConcurrency, cacheSize);
+        }
     }
 
     protected abstract CheckResult check(String s3Url);
 
+    /**
+     * Checks a batch of locations. Backends able to resolve many locations with fewer requests than one per location
+     * override it; by default the locations are checked one by one, in parallel.
+     */
+    protected Map<String, CheckResult> checkAll(Collection<String> locations) {
+        return locations.parallelStream().collect(Collectors.toConcurrentMap(l -> l, this::check, (a, b) -> a));
+    }
+
+    /**
+     * File IO reading the table metadata and manifests, needed by the checks deeper than {@link Depth#METADATA}.
+     */
+    protected abstract FileIO io();
+
     private void setupNessieApi() {
-        this.nessieApi = HttpClientBuilder.builder().withUri(nessieUri).build(NessieApiV2.class);
+        this.nessieApi = HttpClientBuilder.builder().withUri(nessieUri).withAuthentication(Metrics.nessieRequestTimers())
+                .build(NessieApiV2.class);
     }
 
     @Override
     public void run() {
         setup();
-        nessieApi.getAllReferences().get().getReferences().forEach(this::checkTables);
+        ManagementFactory.getMemoryPoolMXBeans().forEach(MemoryPoolMXBean::resetPeakUsage);
+        ExecutorService referenceExecutor = Executors.newFixedThreadPool(referenceConcurrency);
+        MetricsReporter metricsReporter = metricsOptions.start();
+        try {
+            List<Reference> references = nessieApi.getAllReferences().maxRecords(contentBatchSize).stream()
+                    .collect(Collectors.toList());
+            // References sharing history run concurrently, each commit is claimed by the first walk reaching it
+            CompletableFuture.allOf(references.stream()
+                    .map(r -> CompletableFuture.runAsync(() -> checkTables(r), referenceExecutor))
+                    .toArray(CompletableFuture[]::new)).join();
+
+            CacheStats stats = checkResults.synchronous().stats();
+            System.out.printf("Metadata checks: %d distinct, %d served from cache (%.1f%% hit rate), %d evicted\n",
+                    stats.missCount(), stats.hitCount(), stats.hitRate() * 100, stats.evictionCount());
+            printMemoryUsage();
+            if (checkpoint != null) {
+                checkpoint.close();
+            }
+        } catch (NessieNotFoundException e) {
+            throw new RuntimeException(e);
+        } finally {
+            referenceExecutor.shutdownNow();
+            if (reachabilityScan != null) {
+                reachabilityScan.close();
+            }
+            metricsReporter.close();
+        }
+    }
+
+    private void printMemoryUsage() {
+        // Pools peak at different times, their sum is an upper bound of the heap used at once
+        long peakHeap = ManagementFactory.getMemoryPoolMXBeans().stream().filter(p -> p.getType() == MemoryType.HEAP)
+                .mapToLong(p -> p.getPeakUsage().getUsed()).sum();
+        long direct = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(b -> "direct".equals(b.getName())).mapToLong(BufferPoolMXBean::getMemoryUsed).sum();
+        System.out.printf("Commits visited: %d, tracked in %.1f MB off-heap. Peak heap: %.1f MB, direct buffers: %.1f MB\n",
+                processedCommits.size(), processedCommits.memoryUsed() / MB, peakHeap / MB, direct / MB);
+    }
+
+    /**
+     * Checks every location once per run, every further lookup of the same location is served from the cache. The
+     * locations are claimed before they are checked, so references checked concurrently wait for the check of a
+     * shared location already in flight instead of checking it again.
+     */
+    private Map<String, CheckResult> cachedCheckAll(Collection<String> locations) {
+        return checkResults.getAll(locations,
+                (pending, executor) -> CompletableFuture.completedFuture(verifiedCheckAll(pending))).join();
+    }
+
+    /**
+     * Trusts the locations verified by earlier runs, and records the newly verified ones.
+     */
+    private Map<String, CheckResult> verifiedCheckAll(Iterable<? extends String> locations) {
+        Map<String, CheckResult> results = new HashMap<>();
+        List<String> pending = new ArrayList<>();
+        for (String location : locations) {
+            if (checkpoint != null && checkpoint.isVerified(location)) {
+                results.put(location, new CheckResult(Status.SUCCESS, "Verified by an earlier run"));
+            } else {
+                pending.add(location);
+            }
+        }
+
+        Map<String, CheckResult> checked = checkTables(pending);
+        if (checkpoint != null) {
+            checked.forEach((location, result) -> {
+                if (result.getStatus() == Status.SUCCESS) {
+                    checkpoint.markVerified(location);
+                }
+            });
+        }
+        results.putAll(checked);
+        return results;
+    }
+
+    private Map<String, CheckResult> checkTables(Collection<String> metadataLocations) {
+        Metrics.counter("tables.checked").add(metadataLocations.size());
+        Map<String, CheckResult> results = new ConcurrentHashMap<>(checkAll(metadataLocations));
+        if (reachabilityScan != null) {
+            results.keySet().parallelStream()
+                    .filter(location -> results.get(location).getStatus() == Status.SUCCESS)
+                    .forEach(location -> results.put(location, reachabilityScan.scan(location)));
+        }
+        return results;
     }
 
     private void checkTables(Reference branch) {
         try {
-            if (alreadyProcessedCommits.contains(branch.getHash())) {
+            if (!processedCommits.add(branch.getHash())) {
                 // branch shares the commit with an already processed branch
                 return;
             }
 
-            nessieApi.getEntries().reference(branch).stream()
-                    .parallel()
-                    .filter(e -> Content.Type.ICEBERG_TABLE == e.getType())
-                    .forEach(e -> {
-                        try {
-                            IcebergTable t = nessieApi.getContent().hashOnRef(branch.getHash())
-                                    .key(e.getName()).get().get(e.getName()).unwrap(IcebergTable.class).get();
-                            CheckResult result = check(t.getMetadataLocation());
-
-                            if (result.status != Status.SUCCESS || !printOnlyErrors) {
-                                System.out.printf("Table [%s @ BRANCH '%s'], Metadata [%s], Accessibility Status [%s]\n",
-                                        String.join(".", e.getName().getElements()), branch.getName(),
-                                        t.getMetadataLocation(), result.getStatus().name(), result.getMessage());
-                            }
-                            alreadyProcessedCommits.add(branch.getHash());
-                        } catch (NessieNotFoundException ex) {
-                            throw new RuntimeException(ex);
-                        }
-                    });
-
-            if (checkOnlyHeads) {
+            String checkedHash = checkpoint != null ? checkpoint.checkedHash(branch.getName()) : null;
+            if (branch.getHash().equals(checkedHash)) {
+                // unchanged since it was checked by an earlier run
                 return;
             }
 
-            // Check complete commit log
-            nessieApi.getCommitLog().reference(branch).fetch(FetchOption.ALL).stream()
-                    .filter(l -> !alreadyProcessedCommits.contains(l.getCommitMeta().getHash()))
-                    .forEach(l -> {
-                        if (l.getOperations() == null) {
-                            return;
-                        }
-                        l.getOperations().stream().filter(o -> o != null && o instanceof Operation.Put).map(o -> (Operation.Put) o)
-                                .filter(o -> o.getContent() != null && o.getContent() instanceof IcebergTable).forEach(o -> {
-                                    String metaLocation = ((IcebergTable) o.getContent()).getMetadataLocation();
-                                    CheckResult result = check(metaLocation);
-                                    if (result.status != Status.SUCCESS || !printOnlyErrors) {
-                                        System.out.printf("Table [%s @ COMMIT '%s'], Metadata [%s], Accessibility Status [%s]\n",
-                                                String.join(".", o.getKey().getElements()), l.getCommitMeta().getHash(),
-                                                metaLocation, result.getStatus().name(), result.getMessage());
-                                    }
-                                });
-                        alreadyProcessedCommits.add(l.getCommitMeta().getHash());
-                    });
+            if (checkedHash == null || !checkChangedTables(branch, checkedHash)) {
+                checkAllTables(branch);
+            }
+
+            if (!checkOnlyHeads) {
+                checkCommitLog(branch, checkedHash);
+            }
+
+            if (checkpoint != null) {
+                checkpoint.markChecked(branch.getName(), branch.getHash());
+            }
         } catch (NessieNotFoundException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private void checkAllTables(Reference branch) throws NessieNotFoundException {
+        // Entries come with their content, page by page, and are checked one batch at a time
+        Iterator<EntriesResponse.Entry> entries = nessieApi.getEntries().reference(branch).withContent(true)
+                .maxRecords(contentBatchSize).stream()
+                .filter(e -> Content.Type.ICEBERG_TABLE == e.getType())
+                .iterator();
+        List<EntriesResponse.Entry> batch = new ArrayList<>(contentBatchSize);
+        while (entries.hasNext()) {
+            batch.add(entries.next());
+            if (batch.size() == contentBatchSize || !entries.hasNext()) {
+                checkHeadTables(branch, batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Only checks the tables changed on the reference since the given hash. Returns false if the hash can no longer be
+     * diffed against, in which case all the tables need to be checked.
+     */
+    private boolean checkChangedTables(Reference branch, String checkedHash) {
+        try {
+            Iterator<DiffResponse.DiffEntry> changes = nessieApi.getDiff()
+                    .fromRefName(Detached.REF_NAME).fromHashOnRef(checkedHash).toRef(branch)
+                    .maxRecords(contentBatchSize).stream()
+                    .filter(d -> d.getTo() instanceof IcebergTable)
+                    .iterator();
+            System.out.printf("Checking the tables changed on '%s' since %s\n", branch.getName(), checkedHash);
+
+            List<DiffResponse.DiffEntry> batch = new ArrayList<>(contentBatchSize);
+            while (changes.hasNext()) {
+                batch.add(changes.next());
+                if (batch.size() == contentBatchSize || !changes.hasNext()) {
+                    Map<ContentKey, IcebergTable> tables = new LinkedHashMap<>();
+                    batch.forEach(d -> tables.put(d.getKey(), (IcebergTable) d.getTo()));
+                    checkHeadTables(branch, tables);
+                    batch.clear();
+                }
+            }
+            return true;
+        } catch (NessieNotFoundException e) {
+            System.out.printf("Unable to diff '%s' against the checkpoint %s, checking all tables - %s\n",
+                    branch.getName(), checkedHash, e.getMessage());
+            return false;
+        }
+    }
+
+    private void checkHeadTables(Reference branch, List<EntriesResponse.Entry> batch) throws NessieNotFoundException {
+        // Servers not returning the content along with the entries get a single multi-key content request per batch
+        List<ContentKey> withoutContent = batch.stream().filter(e -> e.getContent() == null)
+                .map(EntriesResponse.Entry::getName).collect(Collectors.toList());
+        Map<ContentKey, Content> fetchedContent = withoutContent.isEmpty() ? Collections.emptyMap()
+                : nessieApi.getContent().reference(branch).keys(withoutContent).get();
+
+        Map<ContentKey, IcebergTable> tables = new LinkedHashMap<>();
+        batch.forEach(e -> {
+            Content content = e.getContent() != null ? e.getContent() : fetchedContent.get(e.getName());
+            if (content instanceof IcebergTable) {
+                // otherwise removed since the entries were listed
+                tables.put(e.getName(), (IcebergTable) content);
+            }
+        });
+        checkHeadTables(branch, tables);
+    }
+
+    private void checkHeadTables(Reference branch, Map<ContentKey, IcebergTable> tables) {
+        Map<String, CheckResult> results = cachedCheckAll(tables.values().stream()
+                .map(IcebergTable::getMetadataLocation).collect(Collectors.toSet()));
+
+        tables.forEach((key, t) -> {
+            CheckResult result = results.get(t.getMetadataLocation());
+            if (result.status != Status.SUCCESS || !printOnlyErrors) {
+                System.out.printf("Table [%s @ BRANCH '%s'], Metadata [%s], Accessibility Status [%s]\n",
+                        String.join(".", key.getElements()), branch.getName(),
+                        t.getMetadataLocation(), result.getStatus().name(), result.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Checks the tables put by the commits of the reference, back to the given hash if it was checked before.
+     */
+    private void checkCommitLog(Reference branch, String checkedHash) throws NessieNotFoundException {
+        GetCommitLogBuilder commitLog = nessieApi.getCommitLog().reference(branch).fetch(FetchOption.ALL);
+        if (checkedHash != null) {
+            commitLog.untilHash(checkedHash);
+        }
+
+        // Puts of consecutive commits are checked together, one batch at a time. The head state was checked already, and
+        // the walk stops at the first commit claimed by another walk, which covers the history below it
+        List<LogResponse.LogEntry> commits = new ArrayList<>();
+        int puts = 0;
+        Iterator<LogResponse.LogEntry> log = commitLog.stream()
+                .filter(l -> !l.getCommitMeta().getHash().equals(branch.getHash()))
+                .takeWhile(l -> !l.getCommitMeta().getHash().equals(checkedHash))
+                .takeWhile(l -> processedCommits.add(l.getCommitMeta().getHash()))
+                .iterator();
+        while (log.hasNext()) {
+            LogResponse.LogEntry commit = log.next();
+            commits.add(commit);
+            puts += commit.getOperations() == null ? 0 : commit.getOperations().size();
+            if (puts >= contentBatchSize || !log.hasNext()) {
+                checkCommits(commits);
+                commits.clear();
+                puts = 0;
+            }
+        }
+    }
+
+    private void checkCommits(List<LogResponse.LogEntry> commits) {
+        Map<String, CheckResult> results = cachedCheckAll(commits.stream()
+                .flatMap(l -> icebergPuts(l).map(o -> ((IcebergTable) o.getContent()).getMetadataLocation()))
+                .collect(Collectors.toSet()));
+
+        commits.forEach(l -> {
+            icebergPuts(l).forEach(o -> {
+                String metaLocation = ((IcebergTable) o.getContent()).getMetadataLocation();
+                CheckResult result = results.get(metaLocation);
+                if (result.status != Status.SUCCESS || !printOnlyErrors) {
+                    System.out.printf("Table [%s @ COMMIT '%s'], Metadata [%s], Accessibility Status [%s]\n",
+                            String.join(".", o.getKey().getElements()), l.getCommitMeta().getHash(),
+                            metaLocation, result.getStatus().name(), result.getMessage());
+                }
+            });
+        });
+    }
+
+    private static Stream<Operation.Put> icebergPuts(LogResponse.LogEntry commit) {
+        if (commit.getOperations() == null) {
+            return Stream.empty();
+        }
+        return commit.getOperations().stream().filter(o -> o != null && o instanceof Operation.Put).map(o -> (Operation.Put) o)
+                .filter(o -> o.getContent() != null && o.getContent() instanceof IcebergTable);
+    }
+
     protected static class CheckResult {
         private final Status status;
         private final String message;
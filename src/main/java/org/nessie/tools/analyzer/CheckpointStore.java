@@ -0,0 +1,207 @@
+package org.nessie.tools.analyzer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Persists the progress of the accessibility checks between runs - the last fully checked hash of every reference and
+ * the metadata locations already found accessible, along with the depth they were checked at. A checkpoint only skips
+ * the checks of a run as deep or shallower than the one which recorded it, and the commit history only for a run
+ * following one which checked it too.
+ * <p>
+ * The reference hashes are kept in the checkpoint file itself, rewritten at most every 10 seconds.
+ * The verified locations are appended to a {@code .locations} file next to it as they are verified, and compacted on
+ * {@link #close()} to the locations used by the run, topped up with the most recent earlier ones up to
+ * {@code maxLocations}.
+ */
+class CheckpointStore implements AutoCloseable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long SAVE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final Path file;
+    private final Path locationsFile;
+    private final AccessibilityCheck.Depth depth;
+    private final boolean historyChecked;
+    private final long maxLocations;
+    private final Map<String, String> checkedHashes = new ConcurrentHashMap<>();
+    // Locations of earlier runs with their deepest check, oldest first, only read once loaded
+    private final Map<String, AccessibilityCheck.Depth> previousLocations = new LinkedHashMap<>();
+    // Locations verified or trusted by this run
+    private final Map<String, AccessibilityCheck.Depth> usedLocations = new ConcurrentHashMap<>();
+    private BufferedWriter locationsLog;
+    private volatile long lastSave = System.nanoTime();
+    private boolean closed;
+
+    private CheckpointStore(Path file, AccessibilityCheck.Depth depth, boolean historyChecked, long maxLocations) {
+        this.file = file;
+        this.locationsFile = file.resolveSibling(file.getFileName() + ".locations");
+        this.depth = depth;
+        this.historyChecked = historyChecked;
+        this.maxLocations = maxLocations;
+    }
+
+    /**
+     * Loads the checkpoint for a run checking at the given depth, and the commit history as well if {@code historyChecked}.
+     * Reference hashes checked shallower, or only at the heads by a run checking the history, are dropped, so that the
+     * tables and commits of those references are all checked again.
+     */
+    static CheckpointStore load(Path file, AccessibilityCheck.Depth depth, boolean historyChecked, long maxLocations) {
+        CheckpointStore store = new CheckpointStore(file, depth, historyChecked, maxLocations);
+        try {
+            if (Files.exists(file)) {
+                Checkpoint checkpoint = MAPPER.readValue(file.toFile(), Checkpoint.class);
+                if (checkpoint.depth != null && checkpoint.depth.compareTo(depth) >= 0
+                        && (checkpoint.historyChecked || !historyChecked)) {
+                    store.checkedHashes.putAll(checkpoint.references);
+                }
+            }
+            if (Files.exists(store.locationsFile)) {
+                for (String line : Files.readAllLines(store.locationsFile, StandardCharsets.UTF_8)) {
+                    int separator = line.indexOf(' ');
+                    if (separator > 0) {
+                        AccessibilityCheck.Depth verifiedDepth = AccessibilityCheck.Depth.valueOf(line.substring(0, separator));
+                        store.previousLocations.merge(line.substring(separator + 1), verifiedDepth, CheckpointStore::deeper);
+                    }
+                }
+            }
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            store.locationsLog = Files.newBufferedWriter(store.locationsFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read the checkpoint " + file, e);
+        }
+        return store;
+    }
+
+    String checkedHash(String reference) {
+        return checkedHashes.get(reference);
+    }
+
+    /**
+     * Records the reference as checked up to the hash, saved along with the next save.
+     */
+    void markChecked(String reference, String hash) {
+        checkedHashes.put(reference, hash);
+        if (System.nanoTime() - lastSave > SAVE_INTERVAL_NANOS) {
+            save();
+        }
+    }
+
+    /**
+     * Whether the location was found accessible at least as deep as the checks of this run.
+     */
+    boolean isVerified(String location) {
+        AccessibilityCheck.Depth verifiedDepth = usedLocations.get(location);
+        if (verifiedDepth == null) {
+            verifiedDepth = previousLocations.get(location);
+            if (verifiedDepth != null) {
+                usedLocations.merge(location, verifiedDepth, CheckpointStore::deeper);
+            }
+        }
+        return verifiedDepth != null && verifiedDepth.compareTo(depth) >= 0;
+    }
+
+    void markVerified(String location) {
+        boolean[] deepened = {false};
+        usedLocations.compute(location, (l, verifiedDepth) -> {
+            deepened[0] = verifiedDepth == null || verifiedDepth.compareTo(depth) < 0;
+            return deepened[0] ? depth : verifiedDepth;
+        });
+        AccessibilityCheck.Depth previousDepth = previousLocations.get(location);
+        if (deepened[0] && (previousDepth == null || previousDepth.compareTo(depth) < 0)) {
+            appendLocation(location, depth);
+        }
+    }
+
+    private static AccessibilityCheck.Depth deeper(AccessibilityCheck.Depth a, AccessibilityCheck.Depth b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    private synchronized void appendLocation(String location, AccessibilityCheck.Depth verifiedDepth) {
+        if (closed) {
+            return;
+        }
+        try {
+            locationsLog.write(verifiedDepth.name() + ' ' + location);
+            locationsLog.newLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write the checkpoint " + locationsFile, e);
+        }
+    }
+
+    /**
+     * Replaces the checkpoint file atomically, so that an interrupted save leaves the previous checkpoint intact, and
+     * flushes the locations verified since the last save.
+     */
+    synchronized void save() {
+        if (closed) {
+            return;
+        }
+        lastSave = System.nanoTime();
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.depth = depth;
+        checkpoint.historyChecked = historyChecked;
+        checkpoint.references = new TreeMap<>(checkedHashes);
+        try {
+            locationsLog.flush();
+            Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+            MAPPER.writeValue(temp.toFile(), checkpoint);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write the checkpoint " + file, e);
+        }
+    }
+
+    /**
+     * Saves the checkpoint and compacts the verified locations once the run completes. Locations of earlier runs not
+     * used by this one, such as the replaced states of tables, are kept only while there is room under the limit.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        save();
+        closed = true;
+
+        Map<String, AccessibilityCheck.Depth> kept = new LinkedHashMap<>(previousLocations);
+        kept.keySet().removeAll(usedLocations.keySet());
+        kept.putAll(usedLocations);
+        List<String> lines = new ArrayList<>(kept.size());
+        kept.forEach((location, verifiedDepth) -> lines.add(verifiedDepth.name() + ' ' + location));
+        try {
+            locationsLog.close();
+            Path temp = Files.createTempFile(locationsFile.toAbsolutePath().getParent(),
+                    locationsFile.getFileName().toString(), ".tmp");
+            Files.write(temp, lines.subList((int) Math.max(0, lines.size() - maxLocations), lines.size()),
+                    StandardCharsets.UTF_8);
+            Files.move(temp, locationsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write the checkpoint " + locationsFile, e);
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class Checkpoint {
+        public AccessibilityCheck.Depth depth;
+        public boolean historyChecked;
+        public Map<String, String> references = new TreeMap<>();
+    }
+}
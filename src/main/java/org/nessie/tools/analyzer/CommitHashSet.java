@@ -0,0 +1,95 @@
+package org.nessie.tools.analyzer;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Set of commit hashes kept off-heap as the 64-bit prefixes of the hashes, in an open addressing table of longs. It
+ * takes 11 to 22 bytes per commit, whatever the length of the hashes, so that the full history of large repositories
+ * fits in memory. Two distinct commits sharing a prefix are wrongly seen as the same, which is negligible below
+ * billions of commits.
+ */
+class CommitHashSet {
+
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    // Zero marks the free slots, the zero prefix is tracked separately
+    private static final long FREE = 0L;
+
+    private LongBuffer slots;
+    private int size;
+    private boolean containsZero;
+
+    CommitHashSet() {
+        slots = allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Adds the hash, returns false if it was already present.
+     */
+    synchronized boolean add(String hash) {
+        long prefix = prefix(hash);
+        if (prefix == FREE) {
+            boolean added = !containsZero;
+            containsZero = true;
+            return added;
+        }
+
+        if ((size + 1) * 4L > slots.capacity() * 3L) {
+            grow();
+        }
+        if (!insert(slots, prefix)) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    synchronized int size() {
+        return size + (containsZero ? 1 : 0);
+    }
+
+    /**
+     * Off-heap bytes held by the set.
+     */
+    synchronized long memoryUsed() {
+        return slots.capacity() * (long) Long.BYTES;
+    }
+
+    private void grow() {
+        LongBuffer grown = allocate(slots.capacity() * 2);
+        for (int i = 0; i < slots.capacity(); i++) {
+            long prefix = slots.get(i);
+            if (prefix != FREE) {
+                insert(grown, prefix);
+            }
+        }
+        slots = grown;
+    }
+
+    private static boolean insert(LongBuffer table, long prefix) {
+        int mask = table.capacity() - 1;
+        for (int i = slot(prefix, mask); ; i = (i + 1) & mask) {
+            long current = table.get(i);
+            if (current == prefix) {
+                return false;
+            }
+            if (current == FREE) {
+                table.put(i, prefix);
+                return true;
+            }
+        }
+    }
+
+    private static int slot(long prefix, int mask) {
+        // Hashes are uniformly distributed already, only the upper bits are folded in
+        return (int) (prefix ^ (prefix >>> 32)) & mask;
+    }
+
+    private static long prefix(String hash) {
+        return Long.parseUnsignedLong(hash.substring(0, Math.min(hash.length(), 16)), 16);
+    }
+
+    private static LongBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * Long.BYTES).asLongBuffer();
+    }
+}
@@ -0,0 +1,238 @@
+package org.nessie.tools.analyzer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+import org.apache.iceberg.ManifestContent;
+import org.apache.iceberg.ManifestFile;
+import org.apache.iceberg.ManifestFiles;
+import org.apache.iceberg.PartitionSpec;
+import org.apache.iceberg.Snapshot;
+import org.apache.iceberg.TableMetadata;
+import org.apache.iceberg.TableMetadataParser;
+import org.apache.iceberg.io.CloseableIterable;
+import org.apache.iceberg.io.FileIO;
+import org.nessie.tools.analyzer.AccessibilityCheck.CheckResult;
+import org.nessie.tools.analyzer.AccessibilityCheck.Status;
+import org.nessie.tools.metrics.Metrics;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Walks the snapshots of a table down to its manifest lists, manifests and optionally its data and delete files,
+ * checking that every file is accessible. Manifest lists and manifests shared by snapshots and tables are read and
+ * checked only once; manifests are streamed, and at most {@code concurrency} batches of file checks are in flight.
+ */
+class ReachabilityScan implements AutoCloseable {
+
+    private final FileIO io;
+    private static final int FILE_CHECK_BATCH_SIZE = 1000;
+
+    private final Function<Collection<String>, Map<String, CheckResult>> fileCheck;
+    private final boolean scanDataFiles;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    // Separate caches, only results without errors are kept
+    private final Cache<String, ManifestListResult> manifestListResults;
+    private final Cache<String, Findings> manifestResults;
+
+    ReachabilityScan(FileIO io, Function<Collection<String>, Map<String, CheckResult>> fileCheck, boolean scanDataFiles, int concurrency, long cacheSize) {
+        this.io = io;
+        this.fileCheck = fileCheck;
+        this.scanDataFiles = scanDataFiles;
+        this.executor = Executors.newFixedThreadPool(concurrency);
+        this.permits = new Semaphore(concurrency);
+        this.manifestListResults = Caffeine.newBuilder().maximumSize(cacheSize).build();
+        this.manifestResults = Caffeine.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    /**
+     * Scans the files reachable from an accessible table metadata file.
+     */
+    CheckResult scan(String metadataLocation) {
+        Findings findings = new Findings();
+        // Manifests are carried over from snapshot to snapshot, and data files from manifest to manifest as manifests
+        // are merged, each inaccessible file is only reported once per table
+        Map<String, Findings> failedManifests = new HashMap<>();
+        try {
+            TableMetadata metadata = Metrics.timer("iceberg.metadata.read").time(() -> TableMetadataParser.read(io, metadataLocation));
+            for (Snapshot snapshot : metadata.snapshots()) {
+                if (snapshot.manifestListLocation() != null) {
+                    ManifestListResult result = manifestListResults.getIfPresent(snapshot.manifestListLocation());
+                    if (result == null) {
+                        result = scanManifestList(snapshot, metadata.specsById());
+                        if (!result.hasErrors()) {
+                            manifestListResults.put(snapshot.manifestListLocation(), result);
+                        }
+                    }
+                    findings.add(snapshot.manifestListLocation(), result.manifestListCheck);
+                    failedManifests.putAll(result.failedManifests);
+                }
+            }
+        } catch (RuntimeException e) {
+            return new CheckResult(Status.ERROR, "Unable to scan the table files - " + e.getMessage());
+        }
+        failedManifests.values().forEach(findings::addAll);
+        return findings.result(metadataLocation);
+    }
+
+    private ManifestListResult scanManifestList(Snapshot snapshot, Map<Integer, PartitionSpec> specs) {
+        CheckResult manifestListCheck = check(snapshot.manifestListLocation());
+        Map<String, Findings> failedManifests = new HashMap<>();
+        if (manifestListCheck.getStatus() == Status.SUCCESS) {
+            for (ManifestFile manifest : snapshot.allManifests(io)) {
+                Findings manifestFindings = manifestResults.getIfPresent(manifest.path());
+                if (manifestFindings == null) {
+                    manifestFindings = scanManifest(manifest, specs);
+                    // Errors may be transient, the manifest is scanned again by the next snapshot listing it
+                    if (!manifestFindings.hasErrors()) {
+                        manifestResults.put(manifest.path(), manifestFindings);
+                    }
+                }
+                if (!manifestFindings.isEmpty()) {
+                    failedManifests.put(manifest.path(), manifestFindings);
+                }
+            }
+        }
+        return new ManifestListResult(manifestListCheck, failedManifests);
+    }
+
+    private Findings scanManifest(ManifestFile manifest, Map<Integer, PartitionSpec> specs) {
+        Findings findings = new Findings();
+        if (!findings.add(manifest.path(), check(manifest.path())) || !scanDataFiles) {
+            return findings;
+        }
+
+        // Data and delete files are checked in batches, at most one batch per permit is in flight
+        Phaser inFlight = new Phaser(1);
+        try (CloseableIterable<String> paths = contentFilePaths(manifest, specs)) {
+            List<String> batch = new ArrayList<>(FILE_CHECK_BATCH_SIZE);
+            Iterator<String> pathIterator = paths.iterator();
+            while (pathIterator.hasNext()) {
+                batch.add(pathIterator.next());
+                if (batch.size() < FILE_CHECK_BATCH_SIZE && pathIterator.hasNext()) {
+                    continue;
+                }
+
+                List<String> pending = batch;
+                batch = new ArrayList<>(FILE_CHECK_BATCH_SIZE);
+                permits.acquire();
+                inFlight.register();
+                executor.execute(() -> {
+                    try {
+                        fileCheck.apply(pending).forEach(findings::add);
+                    } catch (RuntimeException e) {
+                        CheckResult error = new CheckResult(Status.ERROR, "Unable to check the file - " + e.getMessage());
+                        pending.forEach(path -> findings.add(path, error));
+                    } finally {
+                        permits.release();
+                        inFlight.arriveAndDeregister();
+                    }
+                });
+            }
+        } catch (IOException e) {
+            findings.add(manifest.path(), new CheckResult(Status.ERROR, "Unable to read the manifest - " + e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            inFlight.arriveAndAwaitAdvance();
+        }
+        return findings;
+    }
+
+    private CheckResult check(String path) {
+        return fileCheck.apply(Collections.singletonList(path)).get(path);
+    }
+
+    private CloseableIterable<String> contentFilePaths(ManifestFile manifest, Map<Integer, PartitionSpec> specs) {
+        if (manifest.content() == ManifestContent.DELETES) {
+            return CloseableIterable.transform(ManifestFiles.readDeleteManifest(manifest, io, specs), f -> f.path().toString());
+        }
+        return ManifestFiles.readPaths(manifest, io);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static class ManifestListResult {
+        private final CheckResult manifestListCheck;
+        private final Map<String, Findings> failedManifests;
+
+        ManifestListResult(CheckResult manifestListCheck, Map<String, Findings> failedManifests) {
+            this.manifestListCheck = manifestListCheck;
+            this.failedManifests = failedManifests;
+        }
+
+        boolean hasErrors() {
+            return manifestListCheck.getStatus() == Status.ERROR || failedManifests.values().stream().anyMatch(Findings::hasErrors);
+        }
+    }
+
+    /**
+     * Collects the inaccessible files found below a table or a manifest, by path.
+     */
+    private static class Findings {
+        private final Map<String, Status> failedFiles = new ConcurrentHashMap<>();
+
+        /**
+         * Records the check of a single file, returns whether it is accessible.
+         */
+        boolean add(String path, CheckResult result) {
+            if (result.getStatus() == Status.SUCCESS) {
+                return true;
+            }
+            failedFiles.put(path, result.getStatus());
+            return false;
+        }
+
+        void addAll(Findings other) {
+            failedFiles.putAll(other.failedFiles);
+        }
+
+        boolean isEmpty() {
+            return failedFiles.isEmpty();
+        }
+
+        boolean hasErrors() {
+            return failedFiles.containsValue(Status.ERROR);
+        }
+
+        /**
+         * Prints every inaccessible file of the table once, and sums them up.
+         */
+        CheckResult result(String metadataLocation) {
+            if (isEmpty()) {
+                return new CheckResult(Status.SUCCESS, "Table files are accessible");
+            }
+
+            Map<Status, Integer> counts = new EnumMap<>(Status.class);
+            failedFiles.forEach((path, status) -> {
+                System.out.printf("File [%s], Metadata [%s], Accessibility Status [%s]\n", path, metadataLocation, status.name());
+                counts.merge(status, 1, Integer::sum);
+            });
+            int notFound = counts.getOrDefault(Status.NOT_FOUND, 0);
+            int accessDenied = counts.getOrDefault(Status.ACCESS_DENIED, 0);
+            int errors = counts.getOrDefault(Status.ERROR, 0);
+            Status status = accessDenied > 0 ? Status.ACCESS_DENIED : notFound > 0 ? Status.NOT_FOUND : Status.ERROR;
+            return new CheckResult(status, String.format("Files not found: %d, access denied: %d, errors: %d",
+                    notFound, accessDenied, errors));
+        }
+    }
+}
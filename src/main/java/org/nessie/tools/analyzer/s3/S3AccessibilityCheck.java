@@ -2,15 +2,33 @@ package org.nessie.tools.analyzer.s3;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.iceberg.aws.s3.S3FileIO;
+import org.apache.iceberg.io.FileIO;
 import org.nessie.tools.analyzer.AccessibilityCheck;
+import org.nessie.tools.metrics.Metrics;
 
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
 
 import picocli.CommandLine;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
 
 @CommandLine.Command(name = "s3", mixinStandardHelpOptions = true,
         description = "AWS S3 specific checks for accessibility")
@@ -24,6 +42,14 @@ public class S3AccessibilityCheck extends AccessibilityCheck {
             "Generate using AWS IAM console (https://console.aws.amazon.com/iam/). Example: wJalrXUtnFEMI/K7MDENG/bPxRfiCYEXAMPLEKEY"})
     protected String secretKey;
 
+    @CommandLine.Option(names = {"--aws-region-code", "-ar"}, defaultValue = "us-west-2",
+            description = {"AWS region used to read the table metadata and manifests with --depth, defaults to 'us-west-2'. Use reference (https://www.aws-services.info/regions.html)"})
+    protected String region;
+
+    @CommandLine.Option(names = {"--list-threshold"}, defaultValue = "10",
+            description = {"Pending locations of a directory, such as the metadata or data directory of a table, are resolved by listing the directory once there are at least this many of them, otherwise with a HEAD request each. Defaults to 10"})
+    protected int listThreshold;
+
     private AmazonS3Client s3Client;
 
     @Override
@@ -33,14 +59,89 @@ public class S3AccessibilityCheck extends AccessibilityCheck {
         super.setup();
     }
 
+    @Override
+    protected FileIO io() {
+        AwsCredentialsProvider credentialsProvider = StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+        S3Client fileIOClient = S3Client.builder().region(Region.of(region)).credentialsProvider(credentialsProvider).build();
+        return new S3FileIO(() -> fileIOClient);
+    }
+
+    @Override
+    protected Map<String, CheckResult> checkAll(Collection<String> locations) {
+        Map<String, CheckResult> results = new ConcurrentHashMap<>();
+        // Pending keys by bucket and directory
+        Map<Map.Entry<String, String>, TreeMap<String, String>> byDirectory = new HashMap<>();
+        for (String location : locations) {
+            try {
+                URI uri = new URI(location);
+                String key = uri.getPath().substring(1);
+                Map.Entry<String, String> directory = Map.entry(uri.getHost(), key.substring(0, key.lastIndexOf('/') + 1));
+                byDirectory.computeIfAbsent(directory, d -> new TreeMap<>()).put(key, location);
+            } catch (URISyntaxException e) {
+                results.put(location, new CheckResult(Status.ERROR, e.getMessage()));
+            }
+        }
+
+        // Only directories with enough pending keys are worth listing, they are listed in parallel
+        List<Map.Entry<Map.Entry<String, String>, TreeMap<String, String>>> listed = new ArrayList<>();
+        byDirectory.entrySet().forEach(directory -> {
+            if (directory.getValue().size() < listThreshold) {
+                directory.getValue().values().forEach(location -> results.put(location, check(location)));
+            } else {
+                listed.add(directory);
+            }
+        });
+        listed.parallelStream().forEach(directory -> results.putAll(
+                listCheck(directory.getKey().getKey(), directory.getKey().getValue(), directory.getValue())));
+        return results;
+    }
+
+    /**
+     * Resolves the locations of a directory by listing it. Every listing request starts right before the next pending
+     * key, so the runs of other files in between the pending ones are skipped over instead of listed. Only the
+     * locations missing from the listing get a HEAD request, to tell apart the absent objects from the ones denied
+     * access to.
+     */
+    private Map<String, CheckResult> listCheck(String bucketName, String prefix, TreeMap<String, String> locationsByKey) {
+        Map<String, CheckResult> results = new HashMap<>();
+        try {
+            String lastListed = "";
+            String next;
+            while ((next = locationsByKey.higherKey(lastListed)) != null) {
+                String beforeNext = next.substring(0, next.length() - 1);
+                ListObjectsV2Request request = new ListObjectsV2Request().withBucketName(bucketName).withPrefix(prefix)
+                        .withStartAfter(beforeNext.compareTo(lastListed) > 0 ? beforeNext : lastListed);
+                ListObjectsV2Result listing = Metrics.timer("object.list").time(() -> s3Client.listObjectsV2(request));
+                List<S3ObjectSummary> summaries = listing.getObjectSummaries();
+                for (S3ObjectSummary summary : summaries) {
+                    String location = locationsByKey.get(summary.getKey());
+                    if (location != null) {
+                        results.put(location, new CheckResult(Status.SUCCESS, "Object is accessible"));
+                    }
+                }
+                if (!listing.isTruncated() || summaries.isEmpty()) {
+                    break;
+                }
+                lastListed = summaries.get(summaries.size() - 1).getKey();
+            }
+        } catch (AmazonS3Exception e) {
+            // Listing denied, falls back to HEAD requests for the whole directory
+            results.clear();
+        }
+
+        locationsByKey.values().stream().filter(location -> !results.containsKey(location))
+                .forEach(location -> results.put(location, check(location)));
+        return results;
+    }
+
     @Override
     protected CheckResult check(String s3Url) {
         try {
             URI uri = new URI(s3Url);
             String bucketName = uri.getHost();
             String path = uri.getPath().substring(1);
-            boolean isPresent = s3Client.doesObjectExist(bucketName, path);
-            return isPresent ? new CheckResult(Status.SUCCESS, "Table metadata is accessible") : new CheckResult(Status.NOT_FOUND, "Table metadata not found");
+            boolean isPresent = Metrics.timer("object.head").time(() -> s3Client.doesObjectExist(bucketName, path));
+            return isPresent ? new CheckResult(Status.SUCCESS, "Object is accessible") : new CheckResult(Status.NOT_FOUND, "Object not found");
         } catch (AmazonS3Exception e) {
             if (e.getStatusCode() == 403 || e.getMessage().contains("Access Denied")) {
                 return new CheckResult(Status.ACCESS_DENIED, e.getMessage());
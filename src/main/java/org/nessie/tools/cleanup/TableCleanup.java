@@ -0,0 +1,234 @@
+package org.nessie.tools.cleanup;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.nessie.tools.metrics.Metrics;
+import org.nessie.tools.metrics.MetricsOptions;
+import org.nessie.tools.metrics.MetricsReporter;
+import org.projectnessie.client.api.CommitMultipleOperationsBuilder;
+import org.projectnessie.client.api.NessieApiV2;
+import org.projectnessie.client.http.HttpClientBuilder;
+import org.projectnessie.error.NessieConflictException;
+import org.projectnessie.error.NessieNotFoundException;
+import org.projectnessie.model.Branch;
+import org.projectnessie.model.CommitMeta;
+import org.projectnessie.model.Content;
+import org.projectnessie.model.ContentKey;
+import org.projectnessie.model.EntriesResponse;
+import org.projectnessie.model.IcebergTable;
+import org.projectnessie.model.Operation;
+
+import picocli.CommandLine;
+
+/**
+ * Drops the tables created by the generator from a branch, with one Nessie commit per batch of tables, and deletes the
+ * files below their locations. The files of a batch are deleted table by table once its commit went through, while the
+ * next batches are committed, and at most {@code --concurrency} file deletions are in flight. Nothing is dropped
+ * without {@code --yes}, the tables are only counted.
+ */
+public abstract class TableCleanup implements Runnable {
+
+    private static final int MAX_COMMIT_RETRIES = 4;
+    private static final String METADATA_DIR = "/metadata/";
+
+    @CommandLine.Option(names = {"--nessie-uri"}, order = 1, defaultValue = "http://localhost:19120/api/v2", description = {"Http URI path for Nessie, defaults to http://localhost:19120/api/v2"})
+    protected URI nessieUri;
+
+    @CommandLine.Option(names = {"--branch"}, order = 2,
+            description = {"Branch the tables are dropped from, defaults to the default branch"})
+    protected String branchName;
+
+    @CommandLine.Option(names = {"--table-prefix"}, defaultValue = "table", order = 3,
+            description = {"Only the top level tables named as generated with this prefix (table<number> and table<number>_load_<number>) are dropped, defaults to the 'table' prefix of the generated tables"})
+    protected String tablePrefix;
+
+    @CommandLine.Option(names = {"--commit-batch-size", "-bs"}, defaultValue = "500", order = 4,
+            description = {"Number of tables dropped with a single Nessie commit, defaults to 500"})
+    protected int commitBatchSize;
+
+    @CommandLine.Option(names = {"--concurrency", "-c"}, defaultValue = "16", order = 5,
+            description = {"Maximum number of concurrent file deletions, defaults to 16"})
+    protected int concurrency;
+
+    @CommandLine.Option(names = {"--keep-files"}, defaultValue = "false", order = 6,
+            description = {"Only drops the tables from the branch, leaving their files in place."})
+    protected boolean keepFiles;
+
+    @CommandLine.Mixin
+    protected MetricsOptions metricsOptions;
+
+    @CommandLine.Option(names = {"--yes"}, defaultValue = "false", order = 7,
+            description = {"Drops the tables found, without it they are only counted."})
+    protected boolean yes;
+
+    private NessieApiV2 nessieApi;
+    private Pattern generatedName;
+    private final AtomicInteger droppedTables = new AtomicInteger();
+    private final AtomicLong deletedFiles = new AtomicLong();
+    private final AtomicInteger failedDeletions = new AtomicInteger();
+    private final AtomicInteger nessieCommits = new AtomicInteger();
+
+    protected void setup() {
+        nessieApi = HttpClientBuilder.builder().withUri(nessieUri).withAuthentication(Metrics.nessieRequestTimers())
+                .build(NessieApiV2.class);
+        // Names of the generated tables and of the ones created by the load generator
+        generatedName = Pattern.compile(Pattern.quote(tablePrefix) + "\\d+(_load_\\d+)?");
+    }
+
+    /**
+     * Deletes all the files below the given table location, returns the number of files deleted. Called on the file
+     * deletion threads, so that backends can run it as blocking requests.
+     */
+    protected abstract long deleteFiles(String tableLocation);
+
+    @Override
+    public void run() {
+        setup();
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread thread = new Thread(r, "gentool-cleanup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Semaphore permits = new Semaphore(concurrency);
+        List<CompletableFuture<Void>> deletions = Collections.synchronizedList(new ArrayList<>());
+        MetricsReporter metricsReporter = metricsOptions.start();
+        try {
+            Branch branch = branchName == null ? nessieApi.getDefaultBranch() : head(branchName);
+            // Entries are listed at the starting hash, the tables counted are the ones dropped and the pages are not
+            // affected by the drops
+            long found = nessieApi.getEntries().reference(branch).stream().filter(this::isGenerated).count();
+            System.out.printf("Found %d tables to drop on '%s'\n", found, branch.getName());
+            if (!yes) {
+                System.out.println("Nothing was dropped, pass --yes to drop them");
+                return;
+            }
+            Iterator<EntriesResponse.Entry> entries = nessieApi.getEntries().reference(branch).withContent(true)
+                    .maxRecords(commitBatchSize).stream().filter(this::isGenerated).iterator();
+
+            long startTime = System.nanoTime();
+            List<EntriesResponse.Entry> batch = new ArrayList<>(commitBatchSize);
+            while (entries.hasNext()) {
+                batch.add(entries.next());
+                if (batch.size() < commitBatchSize && entries.hasNext()) {
+                    continue;
+                }
+
+                List<String> locations = dropTables(branch, batch);
+                batch = new ArrayList<>(commitBatchSize);
+                for (String location : keepFiles ? List.<String>of() : locations) {
+                    permits.acquire();
+                    deletions.add(CompletableFuture.runAsync(() -> {
+                        long deletionStartTime = System.nanoTime();
+                        try {
+                            long files = deleteFiles(location);
+                            Metrics.timer("files.delete").recordSince(deletionStartTime);
+                            Metrics.counter("files.deleted").add(files);
+                            deletedFiles.addAndGet(files);
+                        } catch (RuntimeException e) {
+                            failedDeletions.incrementAndGet();
+                            System.err.println("Unable to delete the files of " + location + " - " + e.getMessage());
+                        } finally {
+                            permits.release();
+                        }
+                    }, executor));
+                }
+                printProgress(startTime);
+            }
+            CompletableFuture.allOf(deletions.toArray(new CompletableFuture<?>[0])).join();
+            printProgress(startTime);
+            System.out.printf("Nessie commits: %d, tables whose files could not be deleted: %d\n", nessieCommits.get(),
+                    failedDeletions.get());
+        } catch (NessieNotFoundException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
+            metricsReporter.close();
+        }
+    }
+
+    private boolean isGenerated(EntriesResponse.Entry entry) {
+        ContentKey key = entry.getName();
+        return entry.getType() == Content.Type.ICEBERG_TABLE && key.getElements().size() == 1
+                && generatedName.matcher(key.getName()).matches();
+    }
+
+    /**
+     * Drops a batch of tables with a single commit, returns their locations.
+     */
+    private List<String> dropTables(Branch branch, List<EntriesResponse.Entry> batch) throws NessieNotFoundException {
+        // Servers not returning the content along with the entries get a single multi-key content request per batch
+        List<ContentKey> withoutContent = batch.stream().filter(e -> e.getContent() == null)
+                .map(EntriesResponse.Entry::getName).collect(Collectors.toList());
+        Map<ContentKey, Content> fetchedContent = withoutContent.isEmpty() ? Collections.emptyMap()
+                : nessieApi.getContent().reference(branch).keys(withoutContent).get();
+
+        List<String> locations = new ArrayList<>();
+        CommitMultipleOperationsBuilder commit = nessieApi.commitMultipleOperations()
+                .commitMeta(CommitMeta.fromMessage("gentool: dropped " + batch.size() + " tables"));
+        for (EntriesResponse.Entry entry : batch) {
+            Content content = entry.getContent() != null ? entry.getContent() : fetchedContent.get(entry.getName());
+            commit.operation(Operation.Delete.of(entry.getName()));
+            if (content instanceof IcebergTable) {
+                String location = tableLocation(((IcebergTable) content).getMetadataLocation());
+                if (location != null) {
+                    locations.add(location);
+                } else {
+                    failedDeletions.incrementAndGet();
+                    System.err.println("Keeping the files of " + entry.getName() + ", its metadata file is outside of a metadata directory");
+                }
+            }
+        }
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                commit.branch(head(branch.getName())).commit();
+                break;
+            } catch (NessieConflictException e) {
+                if (attempt == MAX_COMMIT_RETRIES) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+        nessieCommits.incrementAndGet();
+        droppedTables.addAndGet(batch.size());
+        Metrics.counter("tables.dropped").add(batch.size());
+        return locations;
+    }
+
+    private Branch head(String name) throws NessieNotFoundException {
+        return (Branch) nessieApi.getReference().refName(name).get();
+    }
+
+    /**
+     * Table location of a metadata file, the generated tables keep their metadata files in the metadata directory.
+     * Returns null for metadata files elsewhere, whose table location is unknown.
+     */
+    private static String tableLocation(String metadataLocation) {
+        int metadataDir = metadataLocation.lastIndexOf(METADATA_DIR);
+        return metadataDir > 0 ? metadataLocation.substring(0, metadataDir) : null;
+    }
+
+    private void printProgress(long startTime) {
+        double elapsedSeconds = (System.nanoTime() - startTime) / (double) TimeUnit.SECONDS.toNanos(1);
+        System.out.printf("Dropped: %d tables (%.1f tables/second), deleted: %d files (%.1f files/second)\n",
+                droppedTables.get(), droppedTables.get() / elapsedSeconds, deletedFiles.get(), deletedFiles.get() / elapsedSeconds);
+    }
+}
@@ -0,0 +1,13 @@
+package org.nessie.tools.cleanup;
+
+import org.nessie.tools.cleanup.local.LocalTableCleanup;
+import org.nessie.tools.cleanup.s3.S3TableCleanup;
+
+import picocli.CommandLine;
+
+@CommandLine.Command(name = "cleanup-tables", mixinStandardHelpOptions = true,
+        description = "Drops the generated tables from the Nessie catalog and deletes their files.",
+        subcommands = {S3TableCleanup.class, LocalTableCleanup.class}, showDefaultValues = true)
+public class TableCleanupCLI {
+
+}
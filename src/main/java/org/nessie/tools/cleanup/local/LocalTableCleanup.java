@@ -0,0 +1,48 @@
+package org.nessie.tools.cleanup.local;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.nessie.tools.cleanup.TableCleanup;
+
+import picocli.CommandLine;
+
+@CommandLine.Command(name = "local", mixinStandardHelpOptions = true,
+        description = "Drop the generated tables whose files are stored on the local filesystem")
+public class LocalTableCleanup extends TableCleanup {
+
+    @Override
+    protected long deleteFiles(String tableLocation) {
+        return deleteDirectory(path(tableLocation));
+    }
+
+    private static Path path(String location) {
+        // Tables created through Hadoop have file: URIs as locations
+        return location.startsWith("file:") ? Path.of(URI.create(location)) : Path.of(location);
+    }
+
+    private static long deleteDirectory(Path directory) {
+        if (Files.notExists(directory)) {
+            return 0;
+        }
+
+        try (Stream<Path> paths = Files.walk(directory)) {
+            long deleted = 0;
+            // Children first, so that the directories are empty once deleted
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                boolean file = !Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS);
+                Files.delete(path);
+                deleted += file ? 1 : 0;
+            }
+            return deleted;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
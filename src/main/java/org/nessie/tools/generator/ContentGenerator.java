@@ -5,40 +5,78 @@ import static org.apache.iceberg.TableProperties.GC_ENABLED;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
 
+import com.sun.management.ThreadMXBean;
+import org.apache.iceberg.BaseTable;
 import org.apache.iceberg.CatalogProperties;
+import org.apache.iceberg.DataFile;
 import org.apache.iceberg.DataFiles;
 import org.apache.iceberg.FileFormat;
+import org.apache.iceberg.PartitionSpec;
 import org.apache.iceberg.Schema;
 import org.apache.iceberg.Table;
+import org.apache.iceberg.TableMetadata;
+import org.apache.iceberg.TableOperations;
 import org.apache.iceberg.catalog.TableIdentifier;
+import org.apache.iceberg.encryption.EncryptionManager;
+import org.apache.iceberg.exceptions.CommitFailedException;
 import org.apache.iceberg.io.FileIO;
+import org.apache.iceberg.io.LocationProvider;
 import org.apache.iceberg.nessie.NessieCatalog;
 import org.apache.iceberg.nessie.NessieIcebergClient;
 import org.apache.iceberg.types.Types;
+import org.nessie.tools.metrics.Metrics;
+import org.nessie.tools.metrics.MetricsOptions;
+import org.nessie.tools.metrics.MetricsReporter;
+import org.nessie.tools.metrics.Timer;
 import org.projectnessie.client.api.NessieApiV2;
+import org.projectnessie.client.api.CommitMultipleOperationsBuilder;
 import org.projectnessie.client.http.HttpClientBuilder;
+import org.projectnessie.error.NessieConflictException;
 import org.projectnessie.error.NessieNotFoundException;
 import org.projectnessie.model.Branch;
+import org.projectnessie.model.CommitMeta;
+import org.projectnessie.model.ContentKey;
+import org.projectnessie.model.IcebergTable;
+import org.projectnessie.model.Operation;
 
 import picocli.CommandLine;
 import software.amazon.awssdk.utils.ImmutableMap;
 
+@CommandLine.Command(subcommands = {LoadGenerator.class})
 public abstract class ContentGenerator implements Runnable {
 
     private static final String TABLE_PREFIX = "table";
     private static final String BASE_FILE = "base.parquet";
+    private static final int MAX_COMMIT_RETRIES = 4;
+    private static final long MAX_CACHED_METADATA_BYTES = 64L << 20;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean() instanceof ThreadMXBean
+            ? (ThreadMXBean) ManagementFactory.getThreadMXBean() : null;
+    // Built once, every table gets the same schema and spec, and the template data files the same stats
+    private static final Schema TABLE_SCHEMA = new Schema(Types.NestedField.required(0, "id", Types.IntegerType.get()));
+    private static final PartitionSpec TABLE_SPEC = PartitionSpec.unpartitioned();
+    private static final DataFile TEMPLATE_DATA_FILE = DataFiles.builder(TABLE_SPEC)
+            .withPath("template_data.parquet")
+            .withFormat(FileFormat.PARQUET)
+            .withFileSizeInBytes(559L)
+            .withRecordCount(1L)
+            .build();
 
     @CommandLine.Option(names = {"--nessie-uri"}, order = 1, defaultValue = "http://localhost:19120/api/v2", description = {"Http URI path for Nessie, defaults to http://localhost:19120/api/v2"})
     protected URI nessieUri;
@@ -52,11 +90,56 @@ public abstract class ContentGenerator implements Runnable {
     @CommandLine.Option(names = {"--snapshots-count", "-ts"}, defaultValue = "2", order = 3, description = {"Number of snapshots to be generated, defaults to 2"})
     protected int noOfSnapshots;
 
+    @CommandLine.Option(names = {"--commit-batch-size", "-bs"}, defaultValue = "0", order = 5,
+            description = {"Number of tables to be published with a single Nessie commit. Defaults to 0, which commits every table operation separately through the catalog."})
+    protected int commitBatchSize;
+
+    @CommandLine.Option(names = {"--executor"}, defaultValue = "PLATFORM", order = 6,
+            description = {"Executor running the table generation. VIRTUAL uses a virtual thread per table (needs Java 21+), PLATFORM a bounded pool of platform threads. Defaults to PLATFORM"})
+    protected GenerationExecutor.Type executorType;
+
+    @CommandLine.Option(names = {"--concurrency", "-c"}, defaultValue = "64", order = 7,
+            description = {"Maximum number of tables (or table batches) generated concurrently, defaults to 64"})
+    protected int concurrency;
+
+    @CommandLine.Option(names = {"--rows-per-file"}, defaultValue = "0", order = 8,
+            description = {"Number of synthetic rows written to every data file. Defaults to 0, which reuses the single row template data file instead."})
+    protected long rowsPerFile;
+
+    @CommandLine.Option(names = {"--target-file-size"}, defaultValue = "0", order = 9,
+            description = {"Synthetic data files are closed once they reach this size in bytes, even before --rows-per-file rows. Defaults to 0, no size limit"})
+    protected long targetFileSize;
+
+    @CommandLine.Option(names = {"--shards"}, defaultValue = "0", order = 10,
+            description = {"Number of temporary branches the tables are generated on, merged into the default branch at the end. Defaults to 0, which generates on the default branch directly."})
+    protected int noOfShards;
+
+    @CommandLine.Mixin
+    protected MetricsOptions metricsOptions;
+
+    @CommandLine.Option(names = {"--bulk-history"}, defaultValue = "false", order = 11,
+            description = {"Builds the whole snapshot history of every table offline, writing the manifests in parallel, and publishes it with a single metadata file and Nessie commit. Implies a --commit-batch-size of at least 1."})
+    protected boolean bulkHistory;
+
+    @CommandLine.Option(names = {"--manifest-writers"}, defaultValue = "0", order = 12,
+            description = {"Number of threads writing the manifests and manifest lists of --bulk-history, shared by all tables. Defaults to 0, the number of available processors"})
+    protected int manifestWriterCount;
+
     private NessieCatalog nessieIcebergCatalog;
     private NessieApiV2 nessieApi;
     private FileIO io;
+    private MetadataCachingFileIO catalogIO;
     private Path templateDataFileLocalPath;
+    private SyntheticDataWriter syntheticDataWriter;
+    private ExecutorService manifestWriters;
+    private SnapshotHistoryWriter historyWriter;
     private final Random random = new Random();
+    private final AtomicInteger nessieCommits = new AtomicInteger();
+    private final AtomicInteger commitConflicts = new AtomicInteger();
+    private final AtomicInteger commitRetries = new AtomicInteger();
+    private final AtomicInteger generatedTables = new AtomicInteger();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private volatile DataFile sharedTemplateDataFile;
 
     protected void setup() {
         try {
@@ -64,6 +147,20 @@ public abstract class ContentGenerator implements Runnable {
             setupNessieApi();
             setupNessieIcebergCatalog();
             setupTemplateDataFile();
+            if (rowsPerFile > 0) {
+                syntheticDataWriter = new SyntheticDataWriter(io, rowsPerFile, targetFileSize);
+            }
+            if (bulkHistory) {
+                // Writing manifests is mostly Avro encoding, bound by the processors rather than by the table concurrency.
+                // More writers than processors only make every write wait longer for the CPU.
+                int writers = manifestWriterCount > 0 ? manifestWriterCount : Runtime.getRuntime().availableProcessors();
+                manifestWriters = Executors.newFixedThreadPool(writers, r -> {
+                    Thread thread = new Thread(r, "gentool-manifest-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                historyWriter = new SnapshotHistoryWriter(manifestWriters);
+            }
         } catch (IOException nfe) {
             System.err.println("Unable to setup content generator - " + nfe.getMessage());
             throw new RuntimeException((nfe));
@@ -71,15 +168,22 @@ public abstract class ContentGenerator implements Runnable {
     }
 
     private void setupNessieApi() {
-        this.nessieApi = HttpClientBuilder.builder().withUri(nessieUri).build(NessieApiV2.class);
+        this.nessieApi = HttpClientBuilder.builder().withUri(nessieUri).withAuthentication(Metrics.nessieRequestTimers())
+                .build(NessieApiV2.class);
     }
 
     private void setupNessieIcebergCatalog() throws NessieNotFoundException {
-        nessieIcebergCatalog = new NessieCatalog();
+        nessieIcebergCatalog = new NessieCatalog() {
+            @Override
+            protected TableOperations newTableOps(TableIdentifier tableIdentifier) {
+                return new ConflictCountingTableOperations(super.newTableOps(tableIdentifier));
+            }
+        };
         Branch defaultRef = nessieApi.getDefaultBranch();
         NessieIcebergClient nessieIcebergClient = new NessieIcebergClient(nessieApi, defaultRef.getName(),
                 defaultRef.getHash(), new HashMap<>());
-        nessieIcebergCatalog.initialize("gentool", nessieIcebergClient, io,
+        catalogIO = new MetadataCachingFileIO(io, MAX_CACHED_METADATA_BYTES);
+        nessieIcebergCatalog.initialize("gentool", nessieIcebergClient, catalogIO,
                 ImmutableMap.of(CatalogProperties.WAREHOUSE_LOCATION, warehousePath));
     }
 
@@ -94,63 +198,440 @@ public abstract class ContentGenerator implements Runnable {
 
     protected abstract void remoteCopy(String remoteBaseLocation, String remoteDestLocation);
 
+    /**
+     * Asynchronous variant of {@link #putObject(String, String)}. Backends with a non-blocking client should override
+     * it, the default runs the blocking call on the calling thread.
+     */
+    protected CompletableFuture<Void> putObjectAsync(String localFileLocation, String remoteLocation) {
+        try {
+            putObject(localFileLocation, remoteLocation);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #remoteCopy(String, String)}. Backends with a non-blocking client should override
+     * it, the default runs the blocking call on the calling thread.
+     */
+    protected CompletableFuture<Void> remoteCopyAsync(String remoteBaseLocation, String remoteDestLocation) {
+        try {
+            remoteCopy(remoteBaseLocation, remoteDestLocation);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     protected abstract FileIO io() throws IOException;
 
+    /**
+     * Location the snapshot data file is read from, after {@link #remoteCopy(String, String)} materialized it for
+     * {@code remoteDestLocation}. Backends which do not create a file per snapshot point elsewhere.
+     */
+    protected String dataFileLocation(String remoteBaseLocation, String remoteDestLocation) {
+        return remoteDestLocation;
+    }
+
+    /**
+     * Whether the generated tables depend on the template data file, which must then outlive the run.
+     */
+    protected boolean referencesTemplateDataFile() {
+        return false;
+    }
+
     @Override
     public void run() {
         setup();
 
-        try {
-            String defaultBranchName = nessieApi.getDefaultBranch().getName();
+        List<Branch> shards = new ArrayList<>();
+        MetricsReporter metricsReporter = metricsOptions.start();
+        try (GenerationExecutor executor = new GenerationExecutor(executorType, concurrency)) {
+            Branch defaultBranch = nessieApi.getDefaultBranch();
+            shards.addAll(createShards(defaultBranch));
+            IntFunction<Branch> branch = i -> shards.isEmpty() ? defaultBranch : shards.get(i % shards.size());
             AtomicInteger countDown = new AtomicInteger(noOfTables);
             long startTime = System.currentTimeMillis();
 
-            String templateDataFileRemotePath = warehousePath + "/template_data.parquet";
-            putObject(templateDataFileLocalPath.toString(), templateDataFileRemotePath);
-            String prefix = TABLE_PREFIX + random.nextInt(100);
+            String templateDataFileRemotePath = uploadTemplateDataFile();
+            String prefix = tablePrefix();
 
-            IntStream.range(0, noOfTables).parallel().forEach(t -> {
-                Table table = createTable(prefix + t, defaultBranchName);
-                createSnapshots(table, noOfSnapshots, templateDataFileRemotePath);
-                table.updateProperties().set(GC_ENABLED, "true").set(COMMIT_NUM_RETRIES, "4").commit();
-                System.out.println("Generated " + table.name());
+            int batchSize = bulkHistory ? Math.max(1, commitBatchSize) : commitBatchSize;
+            if (batchSize > 0) {
+                int noOfBatches = (noOfTables + batchSize - 1) / batchSize;
+                executor.forEach(noOfBatches, b -> {
+                    long allocatedBefore = threadAllocatedBytes();
+                    List<String> tableNames = new ArrayList<>();
+                    for (int t = b * batchSize; t < Math.min(noOfTables, (b + 1) * batchSize); t++) {
+                        tableNames.add(prefix + t);
+                    }
+                    generateBatch(tableNames, branch.apply(b), templateDataFileRemotePath, countDown);
+                    recordAllocation(allocatedBefore);
+                });
+            } else {
+                executor.forEach(noOfTables, t -> {
+                    long allocatedBefore = threadAllocatedBytes();
+                    Table table = createTable(prefix + t, branch.apply(t).getName());
+                    createSnapshots(table, stageDataFiles(table.schema(), table.spec(), table.location(), 0, noOfSnapshots,
+                            templateDataFileRemotePath));
+                    table.updateProperties().set(GC_ENABLED, "true").set(COMMIT_NUM_RETRIES, "4").commit();
+                    nessieCommits.addAndGet(2 + noOfSnapshots);
+                    generated(table, countDown);
+                    recordAllocation(allocatedBefore);
+                });
+            }
 
-                if (countDown.decrementAndGet() % 10 == 0) {
-                    System.out.println("Remaining: " + countDown.get());
-                }
-            });
+            mergeShards(defaultBranch.getName(), shards);
 
-            System.out.println("Time taken: " + (System.currentTimeMillis() - startTime)/1000 + " seconds");
-            io.deleteFile(templateDataFileRemotePath);
+            long timeTaken = System.currentTimeMillis() - startTime;
+            System.out.println("Time taken: " + timeTaken/1000 + " seconds");
+            System.out.printf("Nessie commits: %d (%.2f commits/second)\n", nessieCommits.get(),
+                    nessieCommits.get() * 1000.0 / Math.max(1, timeTaken));
+            System.out.printf("Commit conflicts: %d, retries: %d\n", commitConflicts.get(), commitRetries.get());
+            printPerTableCosts();
+
+            releaseTemplateDataFile(templateDataFileRemotePath);
         } catch (Exception e) {
             System.err.println("Unable to generate the tables on this env - " + e.getMessage());
             throw new RuntimeException(e);
+        } finally {
+            deleteShards(shards);
+            if (manifestWriters != null) {
+                manifestWriters.shutdown();
+            }
+            metricsReporter.close();
+        }
+    }
+
+    /**
+     * Creates the temporary branches the tables are spread over, all starting from the head of the default branch.
+     */
+    private List<Branch> createShards(Branch defaultBranch) throws NessieNotFoundException, NessieConflictException {
+        List<Branch> shards = new ArrayList<>();
+        String runId = UUID.randomUUID().toString().substring(0, 8);
+        for (int i = 0; i < noOfShards; i++) {
+            Branch shard = Branch.of(String.format("gentool-shard-%s-%d", runId, i), defaultBranch.getHash());
+            shards.add((Branch) nessieApi.createReference().sourceRefName(defaultBranch.getName()).reference(shard).create());
+        }
+        return shards;
+    }
+
+    /**
+     * Merges every shard into the target branch, with one merge per shard.
+     */
+    private void mergeShards(String targetBranch, List<Branch> shards) throws NessieNotFoundException {
+        long startTime = System.currentTimeMillis();
+        for (Branch shard : shards) {
+            Branch shardHead = head(shard.getName());
+            retryOnConflict(() -> nessieApi.mergeRefIntoBranch().branch(head(targetBranch)).fromRef(shardHead)
+                    .message("gentool: merged " + shard.getName()).merge());
+            nessieCommits.incrementAndGet();
+        }
+        if (!shards.isEmpty()) {
+            System.out.printf("Merged %d shards in %d ms\n", shards.size(), System.currentTimeMillis() - startTime);
+        }
+    }
+
+    private void deleteShards(List<Branch> shards) {
+        for (Branch shard : shards) {
+            try {
+                nessieApi.deleteReference().reference(head(shard.getName())).delete();
+            } catch (NessieNotFoundException | NessieConflictException e) {
+                System.err.println("Unable to delete the shard branch " + shard.getName() + " - " + e.getMessage());
+            }
+        }
+    }
+
+    private Branch head(String branchName) throws NessieNotFoundException {
+        return (Branch) nessieApi.getReference().refName(branchName).get();
+    }
+
+    /**
+     * Runs a Nessie commit, retrying it up to {@link #MAX_COMMIT_RETRIES} times on conflicts. The commit is expected to
+     * pick up the current head of its branch on every attempt.
+     */
+    private void retryOnConflict(NessieCommit commit) throws NessieNotFoundException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                commit.run();
+                return;
+            } catch (NessieConflictException e) {
+                commitConflicts.incrementAndGet();
+                if (attempt == MAX_COMMIT_RETRIES) {
+                    throw new RuntimeException(e);
+                }
+                commitRetries.incrementAndGet();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface NessieCommit {
+        void run() throws NessieNotFoundException, NessieConflictException;
+    }
+
+    /**
+     * Bytes allocated so far by the current thread, or -1 when the JVM does not measure it.
+     */
+    private static long threadAllocatedBytes() {
+        if (THREADS != null && THREADS.isThreadAllocatedMemoryEnabled()) {
+            return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private void recordAllocation(long allocatedBefore) {
+        long allocatedAfter = threadAllocatedBytes();
+        if (allocatedBefore >= 0 && allocatedAfter >= allocatedBefore) {
+            allocatedBytes.addAndGet(allocatedAfter - allocatedBefore);
+            Metrics.counter("bytes.allocated").add(allocatedAfter - allocatedBefore);
+        }
+    }
+
+    /**
+     * Prints the metadata file reads and the allocations per generated table. Only the allocations of the threads
+     * generating the tables are counted, not the ones of the threads staging the data files and writing the manifests.
+     */
+    private void printPerTableCosts() {
+        double tables = Math.max(1, generatedTables.get());
+        System.out.printf("Per table: %.2f metadata reads from storage, %.2f from the local cache, %.1f KB allocated\n",
+                catalogIO.storageReads() / tables, catalogIO.cachedReads() / tables, allocatedBytes.get() / tables / 1024);
+    }
+
+    String tablePrefix() {
+        return TABLE_PREFIX + random.nextInt(100);
+    }
+
+    Branch defaultBranch() throws NessieNotFoundException {
+        return nessieApi.getDefaultBranch();
+    }
+
+    /**
+     * Copies the template data file to the warehouse, unless synthetic data files are written instead. Every run gets
+     * its own template, the tables of earlier runs may still reference theirs.
+     */
+    String uploadTemplateDataFile() {
+        String templateDataFileRemotePath = String.format("%s/template_data_%s.parquet", warehousePath, UUID.randomUUID());
+        if (syntheticDataWriter == null) {
+            putObjectAsync(templateDataFileLocalPath.toString(), templateDataFileRemotePath).join();
+            sharedTemplateDataFile = DataFiles.builder(TABLE_SPEC).copy(TEMPLATE_DATA_FILE).withPath(templateDataFileRemotePath).build();
         }
+        return templateDataFileRemotePath;
     }
 
-    private Table createTable(String tableName, String branchName) {
-        List<Types.NestedField> fields = Stream.of(
-                Types.NestedField.required(0, "id", new Types.IntegerType()))
-                .collect(Collectors.toList());
-        Schema icebergTableSchema = new Schema(fields);
-        String table1QualifiedName = String.format("%s@%s", tableName, branchName);
-        return nessieIcebergCatalog.createTable(TableIdentifier.of(table1QualifiedName), icebergTableSchema);
+    void releaseTemplateDataFile(String templateDataFileRemotePath) {
+        if (syntheticDataWriter != null) {
+            return;
+        }
+
+        if (referencesTemplateDataFile()) {
+            System.out.println("Keeping the template data file, generated tables reference it - " + templateDataFileRemotePath);
+        } else {
+            io.deleteFile(templateDataFileRemotePath);
+        }
     }
 
-    private void createSnapshots(Table table, int count, String templateDataFile) {
-        String tableLocation = table.location();
+    private void generated(Table table, AtomicInteger countDown) {
+        System.out.println("Generated " + table.name());
+        generatedTables.incrementAndGet();
+        Metrics.counter("tables.generated").increment();
 
-        for (int i = 0; i < count; i++) {
+        if (countDown.decrementAndGet() % 10 == 0) {
+            System.out.println("Remaining: " + countDown.get());
+        }
+    }
+
+    Table createTable(String tableName, String branchName) {
+        return nessieIcebergCatalog.buildTable(TableIdentifier.of(tableName + "@" + branchName), TABLE_SCHEMA)
+                .withLocation(tableLocation(tableName)).create();
+    }
+
+    /**
+     * Location of a new table, the same whichever branch the table is created on.
+     */
+    private String tableLocation(String tableName) {
+        return String.format("%s/%s_%s", warehousePath, tableName, UUID.randomUUID());
+    }
+
+    /**
+     * Builds the metadata of all the given tables without touching the catalog and publishes them together with one
+     * Nessie commit.
+     */
+    private void generateBatch(List<String> tableNames, Branch branch, String templateDataFile, AtomicInteger countDown) {
+        CommitMultipleOperationsBuilder commit = nessieApi.commitMultipleOperations().branch(branch)
+                .commitMeta(CommitMeta.fromMessage("gentool: generated " + tableNames.size() + " tables"));
+        List<Table> tables = new ArrayList<>();
+
+        // Data files of the whole batch are staged before any snapshot is built, with the field ids the new tables
+        // assigned
+        List<TableMetadata> newTables = new ArrayList<>();
+        List<List<CompletableFuture<DataFile>>> stagedDataFiles = new ArrayList<>();
+        for (String tableName : tableNames) {
+            String location = tableLocation(tableName);
+            TableMetadata metadata = TableMetadata.newTableMetadata(TABLE_SCHEMA, TABLE_SPEC, location,
+                    ImmutableMap.of(GC_ENABLED, "true", COMMIT_NUM_RETRIES, "4"));
+            newTables.add(metadata);
+            stagedDataFiles.add(stageDataFiles(metadata.schema(), metadata.spec(), location, 0, noOfSnapshots, templateDataFile));
+        }
+
+        for (int i = 0; i < tableNames.size(); i++) {
+            String tableName = tableNames.get(i);
+            TableMetadata metadata = newTables.get(i);
+            StagedTableOperations ops = new StagedTableOperations(io, metadata);
+            Table table = new BaseTable(ops, String.format("gentool.%s@%s", tableName, branch.getName()));
+
+            if (bulkHistory) {
+                // All the table files are in place once the history is built, nothing is committed to Nessie before
+                historyWriter.append(ops, stagedDataFiles.get(i));
+            } else {
+                createSnapshots(table, stagedDataFiles.get(i));
+            }
+            long publishStartTime = System.nanoTime();
+            IcebergTable published = ops.publish();
+            Metrics.timer("iceberg.metadata.write").recordSince(publishStartTime);
+            commit.operation(Operation.Put.of(ContentKey.of(tableName), published));
+            tables.add(table);
+        }
+
+        try {
+            AtomicInteger attempts = new AtomicInteger();
+            retryOnConflict(() -> {
+                if (attempts.getAndIncrement() > 0) {
+                    commit.branch(head(branch.getName()));
+                }
+                commit.commit();
+            });
+            nessieCommits.incrementAndGet();
+        } catch (NessieNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+        tables.forEach(table -> generated(table, countDown));
+    }
+
+    /**
+     * Starts creating the data files of all snapshots of a table, either by copying the template data file or by
+     * writing synthetic rows. Each future completes with the data file once it is in place. Synthetic rows are written
+     * with the field ids of the given schema, which must be the one of the table they are committed to. The data files
+     * are numbered from {@code firstIndex}, so that later appends to a table do not overwrite the earlier data files.
+     */
+    List<CompletableFuture<DataFile>> stageDataFiles(Schema schema, PartitionSpec spec, String tableLocation,
+                                                     int firstIndex, int count, String templateDataFile) {
+        List<CompletableFuture<DataFile>> dataFiles = new ArrayList<>();
+        for (int i = firstIndex; i < firstIndex + count; i++) {
             String dataFile = String.format("%s/data/data_%d.parquet", tableLocation, i);
-            remoteCopy(templateDataFile, dataFile);
-
-            table.newFastAppend().appendFile(DataFiles.builder(table.spec())
-                    .withPath(dataFile)
-                    .withFormat(FileFormat.PARQUET)
-                    .withFileSizeInBytes(559L)
-                    .withRecordCount(1L)
-                    .build()).commit();
-            table.refresh();
+            long startTime = System.nanoTime();
+            CompletableFuture<DataFile> staged = syntheticDataWriter != null
+                    ? CompletableFuture.supplyAsync(() -> syntheticDataWriter.write(schema, spec, dataFile), Runnable::run)
+                    : remoteCopyAsync(templateDataFile, dataFile).thenApply(v -> templateDataFile(dataFileLocation(templateDataFile, dataFile)));
+
+            Timer timer = Metrics.timer(syntheticDataWriter != null ? "object.write" : "object.copy");
+            dataFiles.add(staged.thenApply(f -> {
+                timer.recordSince(startTime);
+                return f;
+            }));
+        }
+        return dataFiles;
+    }
+
+    /**
+     * Data file entry of a copy of the template data file. The data files referencing the template itself all share
+     * one entry.
+     */
+    private DataFile templateDataFile(String location) {
+        DataFile shared = sharedTemplateDataFile;
+        if (shared != null && shared.path().toString().equals(location)) {
+            return shared;
+        }
+        return DataFiles.builder(TABLE_SPEC).copy(TEMPLATE_DATA_FILE).withPath(location).build();
+    }
+
+    void createSnapshots(Table table, List<CompletableFuture<DataFile>> stagedDataFiles) {
+        Timer appends = Metrics.timer("iceberg.append");
+        for (CompletableFuture<DataFile> stagedDataFile : stagedDataFiles) {
+            // Only waits for the data file this snapshot depends on
+            DataFile dataFile = stagedDataFile.join();
+            long startTime = System.nanoTime();
+            // The append refreshes the table on its own, and the metadata file of the previous append is read from the
+            // local cache
+            table.newFastAppend().appendFile(dataFile).commit();
+            appends.recordSince(startTime);
+        }
+    }
+
+    /**
+     * Counts the catalog commits rejected because the table or the branch changed concurrently. Iceberg retries them
+     * on its own, a commit following a rejected one on the same table is counted as a retry.
+     */
+    private class ConflictCountingTableOperations implements TableOperations {
+        private final TableOperations delegate;
+        private volatile boolean rejected;
+
+        ConflictCountingTableOperations(TableOperations delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void commit(TableMetadata base, TableMetadata metadata) {
+            if (rejected) {
+                commitRetries.incrementAndGet();
+            }
+            long startTime = System.nanoTime();
+            try {
+                delegate.commit(base, metadata);
+                rejected = false;
+            } catch (CommitFailedException e) {
+                commitConflicts.incrementAndGet();
+                rejected = true;
+                throw e;
+            } finally {
+                Metrics.timer("iceberg.commit").recordSince(startTime);
+            }
+        }
+
+        @Override
+        public TableMetadata current() {
+            return delegate.current();
+        }
+
+        @Override
+        public TableMetadata refresh() {
+            return Metrics.timer("iceberg.refresh").time(delegate::refresh);
+        }
+
+        @Override
+        public FileIO io() {
+            return delegate.io();
+        }
+
+        @Override
+        public EncryptionManager encryption() {
+            return delegate.encryption();
+        }
+
+        @Override
+        public String metadataFileLocation(String fileName) {
+            return delegate.metadataFileLocation(fileName);
+        }
+
+        @Override
+        public LocationProvider locationProvider() {
+            return delegate.locationProvider();
+        }
+
+        @Override
+        public TableOperations temp(TableMetadata uncommittedMetadata) {
+            return delegate.temp(uncommittedMetadata);
+        }
+
+        @Override
+        public long newSnapshotId() {
+            return delegate.newSnapshotId();
+        }
+
+        @Override
+        public boolean requireStrictCleanup() {
+            return delegate.requireStrictCleanup();
         }
     }
 }
@@ -0,0 +1,96 @@
+package org.nessie.tools.generator;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs generation tasks on a dedicated executor instead of the common ForkJoinPool. At most {@code concurrency} tasks
+ * are in flight at any time; submitting further tasks blocks until a running one completes.
+ */
+public class GenerationExecutor implements AutoCloseable {
+
+    public enum Type {VIRTUAL, PLATFORM}
+
+    private final ExecutorService executor;
+    private final int concurrency;
+    private final Semaphore permits;
+
+    public GenerationExecutor(Type type, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1, found " + concurrency);
+        }
+        this.executor = type == Type.VIRTUAL ? virtualThreadExecutor() : platformThreadExecutor(concurrency);
+        this.concurrency = concurrency;
+        this.permits = new Semaphore(concurrency);
+    }
+
+    /**
+     * Runs the task for every index in [0, count) and waits for all of them to finish. Stops submitting new tasks
+     * once a task fails and rethrows the first failure.
+     */
+    public void forEach(int count, IntConsumer task) {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        try {
+            for (int i = 0; i < count && failure.get() == null; i++) {
+                permits.acquire();
+                int index = i;
+                executor.execute(() -> {
+                    try {
+                        task.accept(index);
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+            // Waits for the in-flight tasks to drain
+            permits.acquire(concurrency);
+            permits.release(concurrency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+
+        if (failure.get() != null) {
+            throw new RuntimeException(failure.get());
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ExecutorService platformThreadExecutor(int concurrency) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread thread = new Thread(r, "gentool-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(concurrency, threadFactory);
+    }
+
+    private static ExecutorService virtualThreadExecutor() {
+        // The tool targets Java 11, virtual threads are looked up only when the running JVM provides them
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Virtual threads need Java 21 or newer, use the PLATFORM executor instead");
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create a virtual thread executor - " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package org.nessie.tools.generator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.iceberg.Table;
+import org.nessie.tools.metrics.MetricsReporter;
+import org.projectnessie.error.NessieNotFoundException;
+
+import picocli.CommandLine;
+
+/**
+ * Drives the table operations of the generator against Nessie at a fixed rate. The schedule is open loop - operations
+ * start at their planned time whether or not the earlier ones completed - and latencies are measured from the planned
+ * start, so that a stalled Nessie shows up in the latencies instead of silently lowering the load.
+ */
+@CommandLine.Command(name = "load", mixinStandardHelpOptions = true,
+        description = "Runs a sustained mix of table creations, appends and property updates at a target rate, and reports the latency percentiles")
+public class LoadGenerator implements Runnable {
+
+    public enum Operation {CREATE, APPEND, PROPERTIES}
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @CommandLine.ParentCommand
+    private ContentGenerator generator;
+
+    @CommandLine.Spec
+    private CommandLine.Model.CommandSpec spec;
+
+    @CommandLine.Option(names = {"--rate"}, defaultValue = "10", order = 1,
+            description = {"Target number of operations started per second, defaults to 10"})
+    protected double rate;
+
+    @CommandLine.Option(names = {"--duration"}, defaultValue = "60", order = 2,
+            description = {"Number of seconds operations are started for, defaults to 60"})
+    protected long durationSeconds;
+
+    @CommandLine.Option(names = {"--mix"}, split = ",", defaultValue = "CREATE=10,APPEND=70,PROPERTIES=20", order = 3,
+            description = {"Relative weights of the operations, defaults to CREATE=10,APPEND=70,PROPERTIES=20. Appends and property updates go to tables created during the run"})
+    protected Map<Operation, Integer> mix;
+
+    @CommandLine.Option(names = {"--load-concurrency"}, defaultValue = "64", order = 4,
+            description = {"Maximum number of operations running at once, further ones queue and their wait counts in the latency. Defaults to 64"})
+    protected int concurrency;
+
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, AtomicLong> failures = new EnumMap<>(Operation.class);
+    private final List<Table> tables = Collections.synchronizedList(new ArrayList<>());
+    // Number of data files appended to every table, which names the next one
+    private final Map<String, AtomicInteger> dataFileCounts = new ConcurrentHashMap<>();
+    private final AtomicInteger tableCount = new AtomicInteger();
+
+    @Override
+    public void run() {
+        if (rate <= 0 || durationSeconds <= 0) {
+            throw new CommandLine.ParameterException(spec.commandLine(),
+                    String.format("--rate and --duration must be positive, found %s and %d", rate, durationSeconds));
+        }
+        if (rate > NANOS_PER_SECOND) {
+            throw new CommandLine.ParameterException(spec.commandLine(),
+                    String.format("--rate must be at most %d operations per second, found %s", NANOS_PER_SECOND, rate));
+        }
+        generator.setup();
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new ConcurrentHistogram(3));
+            failures.put(operation, new AtomicLong());
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread thread = new Thread(r, "gentool-load-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        MetricsReporter metricsReporter = generator.metricsOptions.start();
+        try {
+            String branchName = generator.defaultBranch().getName();
+            String templateDataFile = generator.uploadTemplateDataFile();
+            String prefix = generator.tablePrefix() + "_load_";
+            List<Operation> schedule = schedule();
+
+            long startTime = System.nanoTime();
+            long endTime = startTime + TimeUnit.SECONDS.toNanos(durationSeconds);
+            long scheduled = 0;
+            // Every start is computed from the start of the run, the rounding of the interval does not add up
+            for (long intendedStart = startTime; intendedStart < endTime;
+                 intendedStart = startTime + (long) (scheduled * (double) NANOS_PER_SECOND / rate)) {
+                while (System.nanoTime() < intendedStart) {
+                    LockSupport.parkNanos(intendedStart - System.nanoTime());
+                }
+                Operation operation = schedule.get((int) (scheduled++ % schedule.size()));
+                long plannedStart = intendedStart;
+                executor.execute(() -> perform(operation, plannedStart, prefix, branchName, templateDataFile));
+            }
+
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            report(scheduled, System.nanoTime() - startTime);
+            generator.releaseTemplateDataFile(templateDataFile);
+        } catch (NessieNotFoundException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
+            metricsReporter.close();
+        }
+    }
+
+    /**
+     * Spreads the operations evenly according to their weights, the schedule is cycled through.
+     */
+    private List<Operation> schedule() {
+        List<Operation> schedule = new ArrayList<>();
+        mix.forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                schedule.add(operation);
+            }
+        });
+        if (schedule.isEmpty()) {
+            throw new IllegalArgumentException("The operation mix needs at least one positive weight, found " + mix);
+        }
+        Collections.shuffle(schedule);
+        return schedule;
+    }
+
+    private void perform(Operation operation, long plannedStart, String prefix, String branchName, String templateDataFile) {
+        Table table = tables.isEmpty() ? null : randomTable();
+        Operation performed = table == null ? Operation.CREATE : operation;
+        try {
+            switch (performed) {
+                case APPEND:
+                    int dataFileIndex = dataFileCounts.computeIfAbsent(table.name(), t -> new AtomicInteger()).getAndIncrement();
+                    generator.createSnapshots(table, generator.stageDataFiles(table.schema(), table.spec(),
+                            table.location(), dataFileIndex, 1, templateDataFile));
+                    break;
+                case PROPERTIES:
+                    table.updateProperties().set("gentool.load.updated-at", String.valueOf(System.currentTimeMillis())).commit();
+                    break;
+                default:
+                    tables.add(generator.createTable(prefix + tableCount.getAndIncrement(), branchName));
+            }
+            latencies.get(performed).recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - plannedStart));
+        } catch (RuntimeException e) {
+            failures.get(performed).incrementAndGet();
+            System.err.println(performed + " failed" + (table != null ? " on " + table.name() : "") + " - " + e);
+        }
+    }
+
+    private Table randomTable() {
+        synchronized (tables) {
+            return tables.get(ThreadLocalRandom.current().nextInt(tables.size()));
+        }
+    }
+
+    private void report(long scheduled, long elapsedNanos) {
+        long completed = 0;
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = latencies.get(operation);
+            completed += histogram.getTotalCount();
+            if (histogram.getTotalCount() + failures.get(operation).get() == 0) {
+                continue;
+            }
+            System.out.printf("%-10s count: %d, failed: %d, latency ms p50: %.2f, p99: %.2f, p99.9: %.2f, max: %.2f\n",
+                    operation, histogram.getTotalCount(), failures.get(operation).get(),
+                    histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMaxValue() / 1000.0);
+        }
+        double elapsedSeconds = elapsedNanos / (double) NANOS_PER_SECOND;
+        System.out.printf("Scheduled: %d operations (%.2f ops/second target), completed: %d in %.1f seconds (%.2f ops/second)\n",
+                scheduled, rate, completed, elapsedSeconds, completed / elapsedSeconds);
+    }
+}
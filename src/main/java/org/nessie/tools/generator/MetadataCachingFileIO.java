@@ -0,0 +1,178 @@
+package org.nessie.tools.generator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.iceberg.inmemory.InMemoryInputFile;
+import org.apache.iceberg.io.FileIO;
+import org.apache.iceberg.io.InputFile;
+import org.apache.iceberg.io.OutputFile;
+import org.apache.iceberg.io.PositionOutputStream;
+
+/**
+ * File IO of the catalog which keeps the table metadata files it writes in memory until they are read back. The Nessie
+ * table operations do not remember the metadata file of their own commits, so the refresh following every commit
+ * reads the file just written; it is served from memory instead. Files are dropped from memory once read, and the
+ * ones never read are evicted beyond {@code maxCachedBytes}.
+ * <p>
+ * The cached files only matter to the process which wrote them, the file IO is serialized as the wrapped one.
+ */
+class MetadataCachingFileIO implements FileIO {
+
+    private static final long serialVersionUID = 1L;
+    private static final String METADATA_FILE_SUFFIX = ".metadata.json";
+
+    private final FileIO io;
+    private final transient Cache<String, byte[]> written;
+    private final AtomicLong storageReads = new AtomicLong();
+    private final AtomicLong cachedReads = new AtomicLong();
+
+    MetadataCachingFileIO(FileIO io, long maxCachedBytes) {
+        this.io = io;
+        this.written = Caffeine.newBuilder().maximumWeight(maxCachedBytes)
+                .weigher((String path, byte[] contents) -> contents.length).build();
+    }
+
+    /**
+     * Number of metadata files read from the storage.
+     */
+    long storageReads() {
+        return storageReads.get();
+    }
+
+    /**
+     * Number of metadata files served from memory.
+     */
+    long cachedReads() {
+        return cachedReads.get();
+    }
+
+    private Object writeReplace() {
+        return io;
+    }
+
+    @Override
+    public InputFile newInputFile(String path) {
+        InputFile cached = cached(path);
+        return cached != null ? cached : io.newInputFile(path);
+    }
+
+    @Override
+    public InputFile newInputFile(String path, long length) {
+        InputFile cached = cached(path);
+        return cached != null ? cached : io.newInputFile(path, length);
+    }
+
+    private InputFile cached(String path) {
+        if (!path.endsWith(METADATA_FILE_SUFFIX)) {
+            return null;
+        }
+        byte[] contents = written.asMap().remove(path);
+        if (contents == null) {
+            storageReads.incrementAndGet();
+            return null;
+        }
+        cachedReads.incrementAndGet();
+        return new InMemoryInputFile(path, contents);
+    }
+
+    @Override
+    public OutputFile newOutputFile(String path) {
+        OutputFile outputFile = io.newOutputFile(path);
+        return path.endsWith(METADATA_FILE_SUFFIX) ? new CachingOutputFile(outputFile) : outputFile;
+    }
+
+    @Override
+    public void deleteFile(String path) {
+        // Metadata files of failed commits are deleted
+        written.invalidate(path);
+        io.deleteFile(path);
+    }
+
+    @Override
+    public Map<String, String> properties() {
+        return io.properties();
+    }
+
+    @Override
+    public void close() {
+        written.invalidateAll();
+        io.close();
+    }
+
+    private class CachingOutputFile implements OutputFile {
+        private final OutputFile outputFile;
+
+        CachingOutputFile(OutputFile outputFile) {
+            this.outputFile = outputFile;
+        }
+
+        @Override
+        public PositionOutputStream create() {
+            return new CachingStream(outputFile.location(), outputFile.create());
+        }
+
+        @Override
+        public PositionOutputStream createOrOverwrite() {
+            return new CachingStream(outputFile.location(), outputFile.createOrOverwrite());
+        }
+
+        @Override
+        public String location() {
+            return outputFile.location();
+        }
+
+        @Override
+        public InputFile toInputFile() {
+            return newInputFile(outputFile.location());
+        }
+    }
+
+    private class CachingStream extends PositionOutputStream {
+        private final String path;
+        private final PositionOutputStream out;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private boolean closed;
+
+        CachingStream(String path, PositionOutputStream out) {
+            this.path = path;
+            this.out = out;
+        }
+
+        @Override
+        public long getPos() throws IOException {
+            return out.getPos();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            buffer.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            buffer.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                out.close();
+                // Only once the file is complete on the storage
+                written.put(path, buffer.toByteArray());
+            }
+        }
+    }
+}
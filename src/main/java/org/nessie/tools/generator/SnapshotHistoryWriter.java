@@ -0,0 +1,225 @@
+package org.nessie.tools.generator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import org.apache.iceberg.DataFile;
+import org.apache.iceberg.GenericManifestFile;
+import org.apache.iceberg.ManifestFile;
+import org.apache.iceberg.ManifestFiles;
+import org.apache.iceberg.ManifestWriter;
+import org.apache.iceberg.PartitionSpec;
+import org.apache.iceberg.Snapshot;
+import org.apache.iceberg.SnapshotParser;
+import org.apache.iceberg.SnapshotRef;
+import org.apache.iceberg.SnapshotSummary;
+import org.apache.iceberg.TableMetadata;
+import org.apache.iceberg.avro.Avro;
+import org.apache.iceberg.io.FileAppender;
+import org.apache.iceberg.io.OutputFile;
+import org.apache.iceberg.util.JsonUtil;
+import org.nessie.tools.metrics.Metrics;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Builds the whole snapshot chain of a staged table at once, one append snapshot per data file, without committing the
+ * snapshots one by one. Every snapshot adds a manifest of its own data file, and the manifests of every
+ * {@link #MERGE_GROUP_SIZE} snapshots are merged into one for the snapshots after them, which keeps the manifest lists
+ * short as a merging append would. All the manifests and manifest lists are written in parallel, and the snapshots are
+ * then added to the table metadata in a single pass.
+ */
+class SnapshotHistoryWriter {
+
+    private static final int MERGE_GROUP_SIZE = 100;
+    // Sequence number of the manifests written by ManifestWriter, assigned when a manifest list references them
+    private static final long UNASSIGNED_SEQUENCE_NUMBER = -1;
+
+    private final Executor writers;
+
+    SnapshotHistoryWriter(Executor writers) {
+        this.writers = writers;
+    }
+
+    void append(StagedTableOperations ops, List<CompletableFuture<DataFile>> stagedDataFiles) {
+        int count = stagedDataFiles.size();
+        if (count == 0) {
+            return;
+        }
+        TableMetadata base = ops.current();
+        int formatVersion = base.formatVersion();
+        PartitionSpec spec = base.spec();
+        Snapshot parent = base.currentSnapshot();
+
+        long[] snapshotIds = new long[count];
+        long[] sequenceNumbers = new long[count];
+        for (int i = 0; i < count; i++) {
+            snapshotIds[i] = ops.newSnapshotId();
+            sequenceNumbers[i] = formatVersion > 1 ? base.lastSequenceNumber() + i + 1 : 0;
+        }
+
+        List<CompletableFuture<ManifestFile>> manifests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int snapshot = i;
+            manifests.add(stagedDataFiles.get(i).thenApplyAsync(dataFile -> writeManifest(ops, spec, formatVersion,
+                    snapshotIds[snapshot], sequenceNumbers[snapshot], writer -> writer.add(dataFile, sequenceNumbers[snapshot])), writers));
+        }
+
+        // The manifests of a group are replaced by their merged manifest from the first snapshot after the group
+        List<CompletableFuture<ManifestFile>> mergedManifests = new ArrayList<>();
+        for (int first = 0; first + MERGE_GROUP_SIZE < count; first += MERGE_GROUP_SIZE) {
+            int groupStart = first;
+            int mergingSnapshot = first + MERGE_GROUP_SIZE;
+            List<CompletableFuture<DataFile>> group = stagedDataFiles.subList(groupStart, mergingSnapshot);
+            mergedManifests.add(CompletableFuture.allOf(group.toArray(new CompletableFuture<?>[0])).thenApplyAsync(v ->
+                    writeManifest(ops, spec, formatVersion, snapshotIds[mergingSnapshot], sequenceNumbers[mergingSnapshot], writer -> {
+                        for (int i = groupStart; i < mergingSnapshot; i++) {
+                            writer.existing(group.get(i - groupStart).join(), snapshotIds[i], sequenceNumbers[i], sequenceNumbers[i]);
+                        }
+                    }), writers));
+        }
+
+        List<CompletableFuture<String>> manifestLists = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // Newest first, as appends list them
+            List<CompletableFuture<ManifestFile>> listed = new ArrayList<>();
+            int mergedGroups = i / MERGE_GROUP_SIZE;
+            for (int j = i; j >= mergedGroups * MERGE_GROUP_SIZE; j--) {
+                listed.add(manifests.get(j));
+            }
+            for (int g = mergedGroups - 1; g >= 0; g--) {
+                listed.add(mergedManifests.get(g));
+            }
+            int snapshot = i;
+            Long parentId = i > 0 ? Long.valueOf(snapshotIds[i - 1]) : parent != null ? parent.snapshotId() : null;
+            manifestLists.add(CompletableFuture.allOf(listed.toArray(new CompletableFuture<?>[0])).thenApplyAsync(v ->
+                    writeManifestList(ops, formatVersion, snapshotIds[snapshot], parentId, sequenceNumbers[snapshot], listed), writers));
+        }
+
+        // Snapshots added and made current in the same builder are dropped from the snapshot log as intermediate
+        // snapshots, the chain is added first and then made current snapshot by snapshot
+        TableMetadata.Builder withSnapshots = TableMetadata.buildFrom(base);
+        Totals totals = new Totals(parent);
+        long firstTimestamp = Math.max(System.currentTimeMillis() - count, parent != null ? parent.timestampMillis() + 1 : 0);
+        for (int i = 0; i < count; i++) {
+            DataFile dataFile = stagedDataFiles.get(i).join();
+            Long parentId = i > 0 ? Long.valueOf(snapshotIds[i - 1]) : parent != null ? parent.snapshotId() : null;
+            withSnapshots.addSnapshot(snapshot(formatVersion, base.currentSchemaId(), snapshotIds[i], parentId,
+                    sequenceNumbers[i], firstTimestamp + i, manifestLists.get(i).join(), totals.add(spec, dataFile)));
+        }
+        TableMetadata.Builder chain = TableMetadata.buildFrom(withSnapshots.discardChanges().build());
+        for (long snapshotId : snapshotIds) {
+            chain.setBranchSnapshot(snapshotId, SnapshotRef.MAIN_BRANCH);
+        }
+        ops.commit(base, chain.build());
+    }
+
+    private static ManifestFile writeManifest(StagedTableOperations ops, PartitionSpec spec, int formatVersion,
+                                              long snapshotId, long sequenceNumber, Consumer<ManifestWriter<DataFile>> entries) {
+        long startTime = System.nanoTime();
+        OutputFile outputFile = ops.io().newOutputFile(ops.metadataFileLocation(String.format("%s-m0.avro", UUID.randomUUID())));
+        ManifestWriter<DataFile> writer = ManifestFiles.write(formatVersion, spec, outputFile, snapshotId);
+        try {
+            try {
+                entries.accept(writer);
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Metrics.timer("iceberg.manifest.write").recordSince(startTime);
+
+        ManifestFile manifest = writer.toManifestFile();
+        long minSequenceNumber = manifest.minSequenceNumber() != UNASSIGNED_SEQUENCE_NUMBER ? manifest.minSequenceNumber() : sequenceNumber;
+        return new GenericManifestFile(manifest.path(), manifest.length(), manifest.partitionSpecId(), manifest.content(),
+                sequenceNumber, minSequenceNumber, manifest.snapshotId(),
+                manifest.addedFilesCount(), manifest.addedRowsCount(), manifest.existingFilesCount(), manifest.existingRowsCount(),
+                manifest.deletedFilesCount(), manifest.deletedRowsCount(), manifest.partitions(), manifest.keyMetadata());
+    }
+
+    private static String writeManifestList(StagedTableOperations ops, int formatVersion, long snapshotId, Long parentId,
+                                            long sequenceNumber, List<CompletableFuture<ManifestFile>> manifests) {
+        long startTime = System.nanoTime();
+        String location = ops.metadataFileLocation(String.format("snap-%d-1-%s.avro", snapshotId, UUID.randomUUID()));
+        Map<String, String> meta = new HashMap<>();
+        meta.put("snapshot-id", String.valueOf(snapshotId));
+        if (parentId != null) {
+            meta.put("parent-snapshot-id", String.valueOf(parentId));
+        }
+        meta.put("format-version", String.valueOf(formatVersion));
+        if (formatVersion > 1) {
+            meta.put("sequence-number", String.valueOf(sequenceNumber));
+        }
+        try (FileAppender<ManifestFile> writer = Avro.write(ops.io().newOutputFile(location))
+                .schema(ManifestFile.schema()).named("manifest_file").meta(meta).overwrite().build()) {
+            manifests.forEach(manifest -> writer.add(manifest.join()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Metrics.timer("iceberg.manifest.list.write").recordSince(startTime);
+        return location;
+    }
+
+    private static Snapshot snapshot(int formatVersion, int schemaId, long snapshotId, Long parentId, long sequenceNumber,
+                                     long timestamp, String manifestList, Map<String, String> summary) {
+        ObjectNode node = JsonUtil.mapper().createObjectNode();
+        if (formatVersion > 1) {
+            node.put("sequence-number", sequenceNumber);
+        }
+        node.put("snapshot-id", snapshotId);
+        if (parentId != null) {
+            node.put("parent-snapshot-id", parentId);
+        }
+        node.put("timestamp-ms", timestamp);
+        ObjectNode summaryNode = node.putObject("summary");
+        summaryNode.put("operation", "append");
+        summary.forEach(summaryNode::put);
+        node.put("manifest-list", manifestList);
+        node.put("schema-id", schemaId);
+        return SnapshotParser.fromJson(node.toString());
+    }
+
+    /**
+     * Running totals of the snapshot summaries, starting from the ones of the parent snapshot.
+     */
+    private static class Totals {
+        private long dataFiles;
+        private long records;
+        private long fileSize;
+        private final Map<String, String> parentSummary;
+
+        Totals(Snapshot parent) {
+            parentSummary = parent != null && parent.summary() != null ? parent.summary() : Map.of();
+            dataFiles = Long.parseLong(parentSummary.getOrDefault(SnapshotSummary.TOTAL_DATA_FILES_PROP, "0"));
+            records = Long.parseLong(parentSummary.getOrDefault(SnapshotSummary.TOTAL_RECORDS_PROP, "0"));
+            fileSize = Long.parseLong(parentSummary.getOrDefault(SnapshotSummary.TOTAL_FILE_SIZE_PROP, "0"));
+        }
+
+        Map<String, String> add(PartitionSpec spec, DataFile dataFile) {
+            dataFiles++;
+            records += dataFile.recordCount();
+            fileSize += dataFile.fileSizeInBytes();
+
+            SnapshotSummary.Builder summary = SnapshotSummary.builder();
+            summary.addedFile(spec, dataFile);
+            summary.set(SnapshotSummary.TOTAL_DATA_FILES_PROP, String.valueOf(dataFiles));
+            summary.set(SnapshotSummary.TOTAL_RECORDS_PROP, String.valueOf(records));
+            summary.set(SnapshotSummary.TOTAL_FILE_SIZE_PROP, String.valueOf(fileSize));
+            // Appends leave the deletes as they were
+            for (String deletes : List.of(SnapshotSummary.TOTAL_DELETE_FILES_PROP, SnapshotSummary.TOTAL_POS_DELETES_PROP,
+                    SnapshotSummary.TOTAL_EQ_DELETES_PROP)) {
+                summary.set(deletes, parentSummary.getOrDefault(deletes, "0"));
+            }
+            return summary.build();
+        }
+    }
+}
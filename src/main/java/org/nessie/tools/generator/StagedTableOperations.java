@@ -0,0 +1,79 @@
+package org.nessie.tools.generator;
+
+import java.util.UUID;
+
+import org.apache.iceberg.LocationProviders;
+import org.apache.iceberg.Snapshot;
+import org.apache.iceberg.TableMetadata;
+import org.apache.iceberg.TableMetadataParser;
+import org.apache.iceberg.TableOperations;
+import org.apache.iceberg.exceptions.CommitFailedException;
+import org.apache.iceberg.io.FileIO;
+import org.apache.iceberg.io.LocationProvider;
+import org.projectnessie.model.IcebergTable;
+
+/**
+ * Table operations which keep every commit in memory. The table metadata is built up without any catalog round-trip
+ * and is written out as a single metadata file once the table is published to Nessie.
+ */
+class StagedTableOperations implements TableOperations {
+
+    private final FileIO io;
+    private TableMetadata current;
+
+    StagedTableOperations(FileIO io, TableMetadata metadata) {
+        this.io = io;
+        this.current = settled(metadata);
+    }
+
+    @Override
+    public TableMetadata current() {
+        return current;
+    }
+
+    @Override
+    public TableMetadata refresh() {
+        return current;
+    }
+
+    @Override
+    public void commit(TableMetadata base, TableMetadata metadata) {
+        if (base != current) {
+            throw new CommitFailedException("Cannot commit staged table %s, metadata changed concurrently", current.location());
+        }
+        current = settled(metadata);
+    }
+
+    private static TableMetadata settled(TableMetadata metadata) {
+        // Behave as if the metadata was persisted, otherwise earlier staged snapshots are treated as intermediate
+        // snapshots of one transaction and are dropped from the snapshot log
+        return TableMetadata.buildFrom(metadata).discardChanges().build();
+    }
+
+    @Override
+    public FileIO io() {
+        return io;
+    }
+
+    @Override
+    public String metadataFileLocation(String fileName) {
+        return String.format("%s/metadata/%s", current.location(), fileName);
+    }
+
+    @Override
+    public LocationProvider locationProvider() {
+        return LocationProviders.locationsFor(current.location(), current.properties());
+    }
+
+    /**
+     * Writes the staged metadata and returns the Nessie content pointing at it.
+     */
+    IcebergTable publish() {
+        String metadataLocation = metadataFileLocation(String.format("00000-%s.metadata.json", UUID.randomUUID()));
+        TableMetadataParser.write(current, io.newOutputFile(metadataLocation));
+
+        Snapshot snapshot = current.currentSnapshot();
+        return IcebergTable.of(metadataLocation, snapshot == null ? -1L : snapshot.snapshotId(),
+                current.currentSchemaId(), current.defaultSpecId(), current.defaultSortOrderId());
+    }
+}
@@ -0,0 +1,140 @@
+package org.nessie.tools.generator;
+
+import static org.apache.iceberg.TableProperties.PARQUET_PAGE_SIZE_BYTES;
+import static org.apache.iceberg.TableProperties.PARQUET_ROW_GROUP_SIZE_BYTES;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.iceberg.DataFile;
+import org.apache.iceberg.DataFiles;
+import org.apache.iceberg.FileFormat;
+import org.apache.iceberg.Metrics;
+import org.apache.iceberg.MetricsConfig;
+import org.apache.iceberg.PartitionSpec;
+import org.apache.iceberg.Schema;
+import org.apache.iceberg.data.GenericAppenderFactory;
+import org.apache.iceberg.data.GenericRecord;
+import org.apache.iceberg.data.Record;
+import org.apache.iceberg.io.FileAppender;
+import org.apache.iceberg.io.FileIO;
+import org.apache.iceberg.parquet.ParquetUtil;
+import org.apache.iceberg.types.Type;
+import org.apache.iceberg.types.Types;
+
+/**
+ * Streams synthetic rows of a table schema into a Parquet data file, written through the backend's {@link FileIO}.
+ * Rows are produced one at a time into a single reused record, so the heap only holds the Parquet page and row group
+ * buffers, which are capped to the target file size.
+ */
+class SyntheticDataWriter {
+
+    private static final long MAX_ROW_GROUP_SIZE = 128L * 1024 * 1024;
+    private static final int PAGE_SIZE = 1024 * 1024;
+    // Asking the writer for its length on every row is wasteful
+    private static final int LENGTH_CHECK_INTERVAL = 1000;
+
+    private final FileIO io;
+    private final long rowsPerFile;
+    private final long targetFileSize;
+    private final AtomicBoolean verified = new AtomicBoolean();
+
+    /**
+     * @param rowsPerFile    maximum number of rows per data file
+     * @param targetFileSize data files are closed once they reach this size in bytes, no limit if 0 or less
+     */
+    SyntheticDataWriter(FileIO io, long rowsPerFile, long targetFileSize) {
+        this.io = io;
+        this.rowsPerFile = rowsPerFile;
+        this.targetFileSize = targetFileSize;
+    }
+
+    DataFile write(Schema schema, PartitionSpec spec, String location) {
+        FileAppender<Record> appender = newAppender(schema, spec, location);
+        try {
+            try {
+                writeRows(appender, schema);
+            } finally {
+                appender.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        DataFile dataFile = DataFiles.builder(spec)
+                .withPath(location)
+                .withFormat(FileFormat.PARQUET)
+                .withFileSizeInBytes(appender.length())
+                .withMetrics(appender.metrics())
+                .withSplitOffsets(appender.splitOffsets())
+                .build();
+        if (verified.compareAndSet(false, true)) {
+            verify(schema, dataFile);
+        }
+        return dataFile;
+    }
+
+    /**
+     * Reads the footer of the data file back and checks that every column of the schema is stored under its field id,
+     * so that data files not matching the table schema fail the run instead of reading as nulls.
+     */
+    private void verify(Schema schema, DataFile dataFile) {
+        Metrics metrics = ParquetUtil.fileMetrics(io.newInputFile(dataFile.path().toString()), MetricsConfig.getDefault());
+        for (Types.NestedField field : schema.columns()) {
+            Long valueCount = metrics.valueCounts().get(field.fieldId());
+            if (valueCount == null || valueCount != dataFile.recordCount()) {
+                throw new IllegalStateException(String.format("Column %s of %s is not stored with field id %d, found field ids %s",
+                        field.name(), dataFile.path(), field.fieldId(), metrics.valueCounts().keySet()));
+            }
+        }
+    }
+
+    private FileAppender<Record> newAppender(Schema schema, PartitionSpec spec, String location) {
+        long rowGroupSize = targetFileSize > 0 ? Math.min(targetFileSize, MAX_ROW_GROUP_SIZE) : MAX_ROW_GROUP_SIZE;
+        GenericAppenderFactory appenderFactory = new GenericAppenderFactory(schema, spec)
+                .set(PARQUET_ROW_GROUP_SIZE_BYTES, String.valueOf(rowGroupSize))
+                .set(PARQUET_PAGE_SIZE_BYTES, String.valueOf(Math.min(PAGE_SIZE, rowGroupSize)));
+        return appenderFactory.newAppender(io.newOutputFile(location), FileFormat.PARQUET);
+    }
+
+    private void writeRows(FileAppender<Record> appender, Schema schema) {
+        GenericRecord record = GenericRecord.create(schema);
+        List<Types.NestedField> fields = schema.columns();
+
+        for (long row = 0; row < rowsPerFile; row++) {
+            for (int i = 0; i < fields.size(); i++) {
+                record.set(i, value(fields.get(i).type(), row));
+            }
+            appender.add(record);
+
+            if (targetFileSize > 0 && row % LENGTH_CHECK_INTERVAL == 0 && appender.length() >= targetFileSize) {
+                return;
+            }
+        }
+    }
+
+    private static Object value(Type type, long row) {
+        switch (type.typeId()) {
+            case BOOLEAN:
+                return row % 2 == 0;
+            case INTEGER:
+                return (int) row;
+            case LONG:
+                return row;
+            case FLOAT:
+                return (float) row;
+            case DOUBLE:
+                return (double) row;
+            case STRING:
+                return "value_" + row;
+            case BINARY:
+                return ByteBuffer.wrap(Long.toString(row).getBytes(StandardCharsets.UTF_8));
+            default:
+                throw new UnsupportedOperationException("Synthetic data is not supported for the column type " + type);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.nessie.tools.generator.local;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
@@ -19,6 +20,27 @@ import picocli.CommandLine;
         description = "Generate the tables using the local path as warehouse for Iceberg metadata and data files")
 public class LocalContentGenerator extends ContentGenerator {
 
+    public enum Materialize {COPY, HARDLINK, SYMLINK, REFERENCE}
+
+    private static final int COMPARISON_FILES = 500;
+
+    @CommandLine.Option(names = {"--materialize"}, defaultValue = "COPY",
+            description = {"How the snapshot data files are created from the template data file. COPY copies it, HARDLINK and SYMLINK link to it, " +
+                    "REFERENCE creates no file and points every data file at the shared template. Defaults to COPY"})
+    protected Materialize materialize;
+
+    @CommandLine.Option(names = {"--compare-materialize"}, defaultValue = "false",
+            description = {"Times every materialize mode on the warehouse filesystem before generating the tables."})
+    protected boolean compareMaterialize;
+
+    @Override
+    public void run() {
+        if (compareMaterialize) {
+            compareMaterializeModes();
+        }
+        super.run();
+    }
+
     @Override
     protected void putObject(String localFileLocation, String remoteLocation) {
         try {
@@ -33,21 +55,75 @@ public class LocalContentGenerator extends ContentGenerator {
 
     @Override
     protected void remoteCopy(String remoteBaseLocation, String remoteDestLocation) {
+        materialize(materialize, Path.of(remoteBaseLocation), Path.of(remoteDestLocation));
+    }
+
+    @Override
+    protected String dataFileLocation(String remoteBaseLocation, String remoteDestLocation) {
+        return materialize == Materialize.REFERENCE ? remoteBaseLocation : remoteDestLocation;
+    }
+
+    @Override
+    protected boolean referencesTemplateDataFile() {
+        // Hard links keep the template contents alive on their own
+        return materialize == Materialize.SYMLINK || materialize == Materialize.REFERENCE;
+    }
+
+    @Override
+    protected FileIO io() throws IOException {
+        FileUtils.forceMkdir(new File(warehousePath));
+        return new HadoopFileIO(new Configuration());
+    }
+
+    private static void materialize(Materialize mode, Path template, Path dest) {
         try {
-            Path remoteLocationPath = Path.of(remoteDestLocation);
-            if (Files.notExists(remoteLocationPath.getParent())) {
-                Files.createDirectories(remoteLocationPath.getParent());
+            if (mode == Materialize.REFERENCE) {
+                return;
+            }
+
+            if (Files.notExists(dest.getParent())) {
+                Files.createDirectories(dest.getParent());
             }
 
-            Files.copy(Path.of(remoteBaseLocation), remoteLocationPath);
+            switch (mode) {
+                case HARDLINK:
+                    Files.createLink(dest, template);
+                    break;
+                case SYMLINK:
+                    Files.createSymbolicLink(dest, template.toAbsolutePath());
+                    break;
+                default:
+                    Files.copy(template, dest);
+            }
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
-    @Override
-    protected FileIO io() throws IOException {
-        FileUtils.forceMkdir(new File(warehousePath));
-        return new HadoopFileIO(new Configuration());
+    private void compareMaterializeModes() {
+        Path scratch = null;
+        try {
+            FileUtils.forceMkdir(new File(warehousePath));
+            scratch = Files.createTempDirectory(Path.of(warehousePath), "materialize_compare");
+            Path template = scratch.resolve("template_data.parquet");
+            try (InputStream baseFileStream = getClass().getClassLoader().getResourceAsStream("base.parquet")) {
+                Files.copy(baseFileStream, template);
+            }
+
+            for (Materialize mode : Materialize.values()) {
+                long startTime = System.nanoTime();
+                for (int i = 0; i < COMPARISON_FILES; i++) {
+                    materialize(mode, template, scratch.resolve(mode.name()).resolve(String.format("data_%d.parquet", i)));
+                }
+                System.out.printf("Materialize %s: %.3f ms per data file\n", mode,
+                        (System.nanoTime() - startTime) / 1_000_000.0 / COMPARISON_FILES);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (scratch != null) {
+                FileUtils.deleteQuietly(scratch.toFile());
+            }
+        }
     }
 }
@@ -1,6 +1,9 @@
 package org.nessie.tools.generator.s3;
 
 import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
 
 import org.apache.iceberg.aws.s3.S3FileIO;
 import org.apache.iceberg.io.FileIO;
@@ -12,8 +15,11 @@ import picocli.CommandLine;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
@@ -34,12 +40,22 @@ public class S3ContentGenerator extends ContentGenerator {
             description = {"AWS region to be used, defaults to 'us-west-2'. Use reference (https://www.aws-services.info/regions.html)"})
     protected String region;
 
+    @CommandLine.Option(names = {"--s3-max-concurrency"}, defaultValue = "200",
+            description = {"Maximum number of concurrent S3 requests used to stage the data files, defaults to 200. The table workers wait for a free slot beyond it"})
+    protected int s3MaxConcurrency;
+
     private S3Client s3Client;
+    private S3AsyncClient s3AsyncClient;
+    // The Netty pool only bounds the open connections, the requests waiting for one are bounded here
+    private Semaphore inFlightRequests;
 
     @Override
     protected void setup() {
+        inFlightRequests = new Semaphore(s3MaxConcurrency);
         AwsCredentialsProvider credentialsProvider = StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
         s3Client = S3Client.builder().region(Region.of(region)).credentialsProvider(credentialsProvider).build();
+        s3AsyncClient = S3AsyncClient.builder().region(Region.of(region)).credentialsProvider(credentialsProvider)
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder().maxConcurrency(s3MaxConcurrency)).build();
         super.setup();
     }
 
@@ -60,6 +76,45 @@ public class S3ContentGenerator extends ContentGenerator {
                 .destinationKey(remoteDestUri.getKey()).build());
     }
 
+    @Override
+    protected CompletableFuture<Void> putObjectAsync(String localFileLocation, String remoteLocation) {
+        AmazonS3URI uri = new AmazonS3URI(remoteLocation);
+        return limited(() -> s3AsyncClient.putObject(PutObjectRequest.builder().bucket(uri.getBucket()).key(uri.getKey()).build(),
+                AsyncRequestBody.fromFile(new File(localFileLocation))));
+    }
+
+    @Override
+    protected CompletableFuture<Void> remoteCopyAsync(String remoteBaseLocation, String remoteDestLocation) {
+        AmazonS3URI remoteSourceUri = new AmazonS3URI(remoteBaseLocation);
+        String source = String.join("/", remoteSourceUri.getBucket(), remoteSourceUri.getKey());
+        AmazonS3URI remoteDestUri = new AmazonS3URI(remoteDestLocation);
+
+        return limited(() -> s3AsyncClient.copyObject(CopyObjectRequest.builder().copySource(source)
+                .destinationBucket(remoteDestUri.getBucket()).destinationKey(remoteDestUri.getKey()).build()));
+    }
+
+    /**
+     * Sends the request once fewer than {@code --s3-max-concurrency} requests are in flight. The calling table worker
+     * blocks meanwhile, so that large batches and histories slow the generation down instead of queueing requests
+     * until the connection acquisitions time out.
+     */
+    private CompletableFuture<Void> limited(Supplier<CompletableFuture<?>> request) {
+        try {
+            inFlightRequests.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        CompletableFuture<?> response;
+        try {
+            response = request.get();
+        } catch (RuntimeException e) {
+            inFlightRequests.release();
+            throw e;
+        }
+        return response.whenComplete((r, e) -> inFlightRequests.release()).thenApply(r -> null);
+    }
+
     @Override
     protected FileIO io() {
         return new S3FileIO(() -> s3Client);
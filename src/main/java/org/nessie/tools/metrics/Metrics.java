@@ -0,0 +1,81 @@
+package org.nessie.tools.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.projectnessie.client.http.HttpAuthentication;
+
+/**
+ * Timers and counters of a run, by name. Names are dot separated, starting with the system they measure - nessie,
+ * iceberg or object - or with the tool phase.
+ */
+public final class Metrics {
+
+    private static final Map<String, Timer> TIMERS = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    public static Timer timer(String name) {
+        return TIMERS.computeIfAbsent(name, n -> new Timer());
+    }
+
+    public static LongAdder counter(String name) {
+        return COUNTERS.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /**
+     * Drops the metrics of earlier runs in the same JVM, such as the commands run by the benchmarks one after another.
+     */
+    static void reset() {
+        TIMERS.clear();
+        COUNTERS.clear();
+    }
+
+    static Map<String, Timer> timers() {
+        return TIMERS;
+    }
+
+    static Map<String, LongAdder> counters() {
+        return COUNTERS;
+    }
+
+    /**
+     * Times every Nessie API request by HTTP method and endpoint, such as {@code nessie.get.entries} or
+     * {@code nessie.post.history.commit}. It is installed as the authentication of the Nessie client, which is the hook
+     * the client offers to add request filters, so it cannot be combined with an actual authentication.
+     */
+    public static HttpAuthentication nessieRequestTimers() {
+        return client -> client.addRequestFilter(request -> {
+            Timer timer = timer(nessieRequestName(request.getMethod().name(), request.getUri().getPath()));
+            long startTime = System.nanoTime();
+            // Called once the response status is received, requests failing without a response are not timed
+            request.addResponseCallback((response, failure) -> timer.recordSince(startTime));
+        });
+    }
+
+    static String nessieRequestName(String method, String path) {
+        // Paths are /api/v2/trees/{ref}/{endpoint}/..., the reference names and content keys are left out
+        List<String> segments = new ArrayList<>(Arrays.asList(path.replaceAll("^/+|/+$", "").split("/+")));
+        int trees = segments.indexOf("trees");
+        String endpoint;
+        if (trees < 0) {
+            endpoint = segments.get(segments.size() - 1);
+        } else if (segments.size() == trees + 1) {
+            endpoint = "references";
+        } else if (segments.size() == trees + 2) {
+            endpoint = "reference";
+        } else {
+            endpoint = segments.get(trees + 2);
+            if ("history".equals(endpoint) && segments.size() > trees + 3) {
+                endpoint += "." + segments.get(trees + 3);
+            }
+        }
+        return "nessie." + method.toLowerCase() + "." + endpoint;
+    }
+}
@@ -0,0 +1,30 @@
+package org.nessie.tools.metrics;
+
+import java.nio.file.Path;
+
+import picocli.CommandLine;
+
+/**
+ * Metrics reporting options shared by the commands.
+ */
+public class MetricsOptions {
+
+    @CommandLine.Option(names = {"--metrics-file"},
+            description = {"File the metrics of every interval are appended to, as CSV when the name ends with .csv, as JSON lines otherwise. Defaults to none, only the final summary is printed"})
+    protected Path metricsFile;
+
+    @CommandLine.Option(names = {"--metrics-interval"}, defaultValue = "10",
+            description = {"Number of seconds between the metrics written to the metrics file, defaults to 10"})
+    protected long metricsIntervalSeconds;
+
+    /**
+     * Starts reporting the metrics of a run from scratch, the summary is printed once the reporter is closed.
+     */
+    public MetricsReporter start() {
+        if (metricsIntervalSeconds <= 0) {
+            throw new IllegalArgumentException("The metrics interval must be positive, found " + metricsIntervalSeconds);
+        }
+        Metrics.reset();
+        return new MetricsReporter(metricsFile, metricsIntervalSeconds);
+    }
+}
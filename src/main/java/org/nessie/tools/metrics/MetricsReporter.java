@@ -0,0 +1,172 @@
+package org.nessie.tools.metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Collects the metrics on a dedicated thread every interval, appends them to a JSON lines or CSV file and prints a
+ * summary when closed. The threads recording the metrics never wait on the reporter or on the file.
+ */
+public class MetricsReporter implements AutoCloseable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String[] COLUMNS = {"time", "metric", "type", "count", "rate", "p50_ms", "p99_ms", "p99.9_ms", "max_ms"};
+    private static final long STDOUT_FLUSH_MILLIS = 1000;
+
+    private final BufferedWriter writer;
+    private final boolean csv;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, Long> reportedCounts = new HashMap<>();
+    private final long startTime = System.nanoTime();
+    private long lastReportTime = startTime;
+
+    MetricsReporter(Path file, long intervalSeconds) {
+        try {
+            writer = file != null ? Files.newBufferedWriter(file) : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create the metrics file " + file, e);
+        }
+        csv = file != null && file.getFileName().toString().endsWith(".csv");
+        Metrics.counters().forEach((name, counter) -> reportedCounts.put(name, counter.sum()));
+        if (csv) {
+            writeLine(String.join(",", COLUMNS));
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "gentool-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::report, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        // The standard output is buffered, see CLI
+        scheduler.scheduleAtFixedRate(System.out::flush, STDOUT_FLUSH_MILLIS, STDOUT_FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void report() {
+        long now = System.nanoTime();
+        double intervalSeconds = Math.max(1, now - lastReportTime) / 1e9;
+        lastReportTime = now;
+        String time = Instant.now().toString();
+
+        Metrics.timers().forEach((name, timer) -> {
+            Histogram interval = timer.nextInterval();
+            if (interval.getTotalCount() > 0) {
+                record(time, name, "timer", interval.getTotalCount(), interval.getTotalCount() / intervalSeconds, interval);
+            }
+        });
+        Metrics.counters().forEach((name, counter) -> {
+            long count = counter.sum();
+            long previous = reportedCounts.getOrDefault(name, 0L);
+            reportedCounts.put(name, count);
+            if (count != previous) {
+                record(time, name, "counter", count - previous, (count - previous) / intervalSeconds, null);
+            }
+        });
+        flush();
+    }
+
+    private void record(String time, String metric, String type, long count, double rate, Histogram latencies) {
+        if (writer == null) {
+            return;
+        }
+
+        Object[] values = {time, metric, type, count, round(rate),
+                latencies != null ? millis(latencies.getValueAtPercentile(50)) : null,
+                latencies != null ? millis(latencies.getValueAtPercentile(99)) : null,
+                latencies != null ? millis(latencies.getValueAtPercentile(99.9)) : null,
+                latencies != null ? millis(latencies.getMaxValue()) : null};
+        if (csv) {
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < values.length; i++) {
+                line.append(i > 0 ? "," : "").append(values[i] != null ? values[i] : "");
+            }
+            writeLine(line.toString());
+            return;
+        }
+
+        Map<String, Object> line = new LinkedHashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                line.put(COLUMNS[i], values[i]);
+            }
+        }
+        try {
+            writeLine(MAPPER.writeValueAsString(line));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeLine(String line) {
+        try {
+            writer.write(line);
+            writer.newLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write the metrics", e);
+        }
+    }
+
+    private void flush() {
+        try {
+            if (writer != null) {
+                writer.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write the metrics", e);
+        }
+    }
+
+    /**
+     * Reports the last interval and prints the count, throughput and latency percentiles of every metric over the
+     * whole run.
+     */
+    @Override
+    public synchronized void close() {
+        scheduler.shutdownNow();
+        report();
+        double elapsedSeconds = (System.nanoTime() - startTime) / 1e9;
+        System.out.println("Metrics:");
+        Metrics.timers().forEach((name, timer) -> {
+            Histogram total = timer.total();
+            if (total.getTotalCount() > 0) {
+                System.out.printf("  %-32s count: %d (%.1f/second), latency ms p50: %.2f, p99: %.2f, p99.9: %.2f, max: %.2f\n",
+                        name, total.getTotalCount(), total.getTotalCount() / elapsedSeconds,
+                        millis(total.getValueAtPercentile(50)), millis(total.getValueAtPercentile(99)),
+                        millis(total.getValueAtPercentile(99.9)), millis(total.getMaxValue()));
+            }
+        });
+        Metrics.counters().forEach((name, counter) -> System.out.printf("  %-32s count: %d (%.1f/second)\n",
+                name, counter.sum(), counter.sum() / elapsedSeconds));
+        System.out.flush();
+        try {
+            if (writer != null) {
+                writer.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write the metrics", e);
+        }
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
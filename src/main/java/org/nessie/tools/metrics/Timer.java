@@ -0,0 +1,55 @@
+package org.nessie.tools.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Records the latencies of an operation in microseconds. Recording does not lock, the reporter collects the recorded
+ * values interval by interval.
+ */
+public class Timer {
+
+    private final Recorder recorder = new Recorder(3);
+    // Only touched by the reporter
+    private final Histogram total = new Histogram(3);
+    private Histogram interval;
+
+    Timer() {
+    }
+
+    public void record(long nanos) {
+        recorder.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)));
+    }
+
+    /**
+     * Records the time elapsed since the given {@link System#nanoTime()}.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public <T> T time(Supplier<T> operation) {
+        long startTime = System.nanoTime();
+        try {
+            return operation.get();
+        } finally {
+            recordSince(startTime);
+        }
+    }
+
+    /**
+     * Latencies recorded since the previous call, which are added to the totals.
+     */
+    synchronized Histogram nextInterval() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        return interval;
+    }
+
+    synchronized Histogram total() {
+        return total;
+    }
+}